@@ -1 +1,2 @@
-keytool -genkey -alias sslclient -keystore sslclientkeys
\ No newline at end of file
+keytool -genkey -alias sslclient -keystore sslclientkeys
+keytool -genkeypair -alias sslrsa -keyalg RSA -keysize 2048 -storetype JKS -keystore sslrsakeys
\ No newline at end of file
@@ -0,0 +1,107 @@
+package benchmark.site.kason.netlib.codec;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.codec.DeflateCodec;
+import site.kason.netlib.codec.LZ4Codec;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.pipeline.Codec;
+import site.kason.netlib.tcp.pipeline.Pipeline;
+
+/**
+ * Measures the throughput of encoding and decoding a message with the compression codecs.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionCodecBenchmark {
+
+  @Param({"deflate", "lz4"})
+  public String codec;
+
+  @Param({"text", "random"})
+  public String data;
+
+  @Param({"65536"})
+  public int messageSize;
+
+  private byte[] message;
+
+  private byte[] received;
+
+  private Codec codecInstance;
+
+  private Pipeline encodePipeline;
+
+  private Pipeline decodePipeline;
+
+  @Setup
+  public void setup() {
+    message = new byte[messageSize];
+    if ("random".equals(data)) {
+      new Random(1).nextBytes(message);
+    } else {
+      String words = "GET /index.html HTTP/1.1 Host: example.com Accept: text/html ";
+      Random rnd = new Random(1);
+      for (int i = 0; i < message.length; i++) {
+        message[i] = (byte) words.charAt((i + rnd.nextInt(3)) % words.length());
+      }
+    }
+    received = new byte[messageSize];
+    codecInstance = "lz4".equals(codec) ? new LZ4Codec() : new DeflateCodec();
+    encodePipeline = new Pipeline();
+    encodePipeline.addProcessor(codecInstance.getEncoder());
+    decodePipeline = new Pipeline();
+    decodePipeline.addProcessor(codecInstance.getDecoder());
+  }
+
+  @TearDown
+  public void tearDown() {
+    codecInstance.release();
+    encodePipeline.release();
+    decodePipeline.release();
+  }
+
+  @Benchmark
+  public byte[] roundTrip() {
+    IOBuffer encIn = encodePipeline.getInBuffer();
+    IOBuffer encOut = encodePipeline.getOutBuffer();
+    IOBuffer decIn = decodePipeline.getInBuffer();
+    IOBuffer decOut = decodePipeline.getOutBuffer();
+    int sent = 0;
+    int got = 0;
+    while (got < messageSize) {
+      encIn.compact();
+      int len = Math.min(encIn.getWritableSize(), messageSize - sent);
+      encIn.push(message, sent, len);
+      sent += len;
+      encodePipeline.process();
+      decIn.compact();
+      decIn.push(encOut);
+      decodePipeline.process();
+      int n = decOut.getReadableSize();
+      decOut.poll(received, got, n);
+      decOut.compact();
+      got += n;
+    }
+    return received;
+  }
+
+}
@@ -0,0 +1,108 @@
+package benchmark.site.kason.netlib.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.codec.DelimiterFrameCodec;
+import site.kason.netlib.codec.DelimiterScanner;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.ReadTask;
+
+/**
+ * Measures the throughput of splitting a buffer of lines,
+ * comparing the word-at-a-time scanner with a byte-at-a-time loop.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelimiterScanBenchmark {
+
+  private static final int BUFFER_SIZE = 65536;
+
+  @Param({"16", "128", "1024"})
+  public int lineLength;
+
+  private byte[] data;
+
+  private ByteBuffer view;
+
+  private IOBuffer buffer;
+
+  private ReadTask readTask;
+
+  private int frames;
+
+  @Setup
+  public void setup() {
+    data = new byte[BUFFER_SIZE];
+    Random random = new Random(1);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (i + 1) % (lineLength + 1) == 0 ? (byte) '\n' : (byte) ('a' + random.nextInt(26));
+    }
+    //end with a complete line so that the decoder keeps no state between invocations
+    data[data.length - 1] = '\n';
+    view = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    buffer = IOBuffer.create(BUFFER_SIZE);
+    readTask = DelimiterFrameCodec.lines(BUFFER_SIZE).newReadTask((ch, frame) -> {
+      frames++;
+      return false;
+    });
+  }
+
+  @Benchmark
+  public int naiveScan() {
+    int count = 0;
+    int idx = -1;
+    while ((idx = naiveIndexOf(idx + 1, (byte) '\n')) >= 0) {
+      count++;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int swarScan() {
+    int count = 0;
+    int idx = -1;
+    while ((idx = DelimiterScanner.indexOf(view, idx + 1, data.length, (byte) '\n')) >= 0) {
+      count++;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int decodeFrames() {
+    buffer.setReadPosition(0);
+    buffer.setWritePosition(0);
+    buffer.push(data);
+    frames = 0;
+    readTask.handleRead(null, buffer);
+    return frames;
+  }
+
+  private int naiveIndexOf(int from, byte value) {
+    for (int i = from; i < data.length; i++) {
+      if (data[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+}
@@ -0,0 +1,98 @@
+package benchmark.site.kason.netlib.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.io.DirectIOBuffer;
+import site.kason.netlib.io.IOBuffer;
+
+/**
+ * Copying data in and out of heap and direct buffers.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IOBufferBenchmark {
+
+  private static final int CAPACITY = 16 * 1024;
+
+  @Param({"false", "true"})
+  public boolean direct;
+
+  @Param({"64", "1024"})
+  public int chunkSize;
+
+  private IOBuffer buffer;
+
+  private IOBuffer other;
+
+  private byte[] chunk;
+
+  private ByteBuffer nioChunk;
+
+  @Setup
+  public void setup() {
+    buffer = direct ? DirectIOBuffer.create(CAPACITY) : IOBuffer.create(CAPACITY);
+    other = direct ? DirectIOBuffer.create(CAPACITY) : IOBuffer.create(CAPACITY);
+    chunk = new byte[chunkSize];
+    nioChunk = ByteBuffer.allocate(chunkSize);
+  }
+
+  @Benchmark
+  public IOBuffer pushPoll() {
+    buffer.push(chunk);
+    buffer.poll(chunk);
+    buffer.compact();
+    return buffer;
+  }
+
+  @Benchmark
+  public IOBuffer pushPollNio() {
+    nioChunk.clear();
+    buffer.push(nioChunk);
+    nioChunk.clear();
+    buffer.poll(nioChunk);
+    buffer.compact();
+    return buffer;
+  }
+
+  @Benchmark
+  public IOBuffer pushBuffer() {
+    other.push(chunk);
+    buffer.push(other);
+    buffer.moveReadPosition(chunkSize);
+    buffer.compact();
+    other.compact();
+    return buffer;
+  }
+
+  /**
+   * compact a buffer whose readable data does not start at 0
+   */
+  @Benchmark
+  public IOBuffer compact() {
+    buffer.push(chunk);
+    buffer.push(chunk);
+    buffer.moveReadPosition(chunkSize);
+    buffer.compact();
+    buffer.moveReadPosition(chunkSize);
+    buffer.compact();
+    return buffer;
+  }
+
+}
@@ -0,0 +1,133 @@
+package benchmark.site.kason.netlib.tcp;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.tcp.ChannelHostGroup;
+import site.kason.netlib.tcp.ServerChannel;
+
+/**
+ * Connections accepted per second over the loopback interface.
+ * Every operation opens a burst of blocking connections and waits until the server has accepted all of them.
+ * The server accepts in the boss loop,or in every worker with listeners sharded by SO_REUSEPORT.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(AcceptBenchmark.BURST)
+public class AcceptBenchmark {
+
+  static final int BURST = 64;
+
+  private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  @Param({"boss", "sharded"})
+  public String listener;
+
+  @Param({"2"})
+  public int workers;
+
+  @Param({"1", "16"})
+  public int acceptSpinLimit;
+
+  private ChannelHostGroup group;
+
+  private Thread loop;
+
+  private SocketAddress address;
+
+  private final AtomicLong accepted = new AtomicLong();
+
+  private final SocketChannel[] clients = new SocketChannel[BURST];
+
+  private long expected;
+
+  private volatile Thread waiter;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    group = ChannelHostGroup.create(workers);
+    group.setAcceptSpinLimit(acceptSpinLimit);
+    SocketAddress endpoint = new InetSocketAddress("127.0.0.1", 0);
+    List<ServerChannel> servers;
+    if ("sharded".equals(listener)) {
+      servers = group.createShardedServerChannels(endpoint, 1024, ch -> onAccepted());
+    } else {
+      servers = Collections.singletonList(group.createServerChannel(endpoint, 1024, ch -> onAccepted()));
+    }
+    address = servers.get(0).serverSocketChannel().getLocalAddress();
+    loop = new Thread(group::listen, "benchmark-server");
+    loop.setDaemon(true);
+    loop.start();
+    expected = 0;
+  }
+
+  private void onAccepted() {
+    accepted.incrementAndGet();
+    Thread w = waiter;
+    if (w != null) {
+      LockSupport.unpark(w);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    group.stopListen();
+    loop.join();
+  }
+
+  @Benchmark
+  public void acceptBurst() throws Exception {
+    for (int i = 0; i < BURST; i++) {
+      clients[i] = SocketChannel.open(address);
+    }
+    expected += BURST;
+    await(expected);
+    for (int i = 0; i < BURST; i++) {
+      clients[i].close();
+      clients[i] = null;
+    }
+  }
+
+  private void await(long count) throws TimeoutException {
+    long deadline = System.nanoTime() + TIMEOUT_NANOS;
+    waiter = Thread.currentThread();
+    try {
+      while (accepted.get() < count) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new TimeoutException("accepted " + accepted.get() + " of " + count + " connections");
+        }
+        LockSupport.parkNanos(this, remaining);
+      }
+    } finally {
+      waiter = null;
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+package benchmark.site.kason.netlib.tcp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.tcp.Channel;
+
+/**
+ * Bulk transfer over one loopback connection:every operation echoes 1 MiB written in 64 KiB chunks,
+ * so the score in ops/s is the echoed MiB per second.
+ * Run it with {@code -prof gc} to see the allocation per MiB ({@code gc.alloc.rate.norm}).
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkTransferBenchmark {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private static final int CHUNKS = 16;
+
+  @Param({"none", "ssl"})
+  public String codec;
+
+  private LoopbackEcho echo;
+
+  private Channel channel;
+
+  private byte[] chunk;
+
+  private long expected;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    echo = new LoopbackEcho(codec);
+    channel = echo.connect();
+    chunk = new byte[CHUNK_SIZE];
+    for (int i = 0; i < chunk.length; i++) {
+      chunk[i] = (byte) i;
+    }
+    expected = 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    echo.close();
+  }
+
+  @Benchmark
+  public void transfer() throws Exception {
+    for (int i = 0; i < CHUNKS; i++) {
+      echo.send(channel, chunk);
+    }
+    expected += (long) CHUNK_SIZE * CHUNKS;
+    echo.await(expected);
+  }
+
+}
@@ -0,0 +1,102 @@
+package benchmark.site.kason.netlib.tcp;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.tcp.Channel;
+
+/**
+ * Request/response over one loopback connection:the latency of a single echo
+ * and the throughput of pipelined echoes,with read tasks or with futures.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EchoBenchmark {
+
+  private static final int PIPELINE_DEPTH = 16;
+
+  @Param({"none", "ssl", "lz4"})
+  public String codec;
+
+  @Param({"64", "4096"})
+  public int messageSize;
+
+  private LoopbackEcho echo;
+
+  private Channel channel;
+
+  private Channel asyncChannel;
+
+  private byte[] message;
+
+  private long expected;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    echo = new LoopbackEcho(codec);
+    channel = echo.connect();
+    asyncChannel = echo.connectAsync();
+    message = new byte[messageSize];
+    for (int i = 0; i < message.length; i++) {
+      message[i] = (byte) i;
+    }
+    expected = 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    echo.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void echo() throws Exception {
+    echo.send(channel, message);
+    expected += messageSize;
+    echo.await(expected);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(PIPELINE_DEPTH)
+  public void pipelined() throws Exception {
+    for (int i = 0; i < PIPELINE_DEPTH; i++) {
+      echo.send(channel, message);
+    }
+    expected += (long) messageSize * PIPELINE_DEPTH;
+    echo.await(expected);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(PIPELINE_DEPTH)
+  public byte[] pipelinedAsync() throws Exception {
+    CompletableFuture<byte[]> response = null;
+    for (int i = 0; i < PIPELINE_DEPTH; i++) {
+      asyncChannel.writeAsync(message);
+      response = asyncChannel.readAsync(messageSize);
+    }
+    return response.get();
+  }
+
+}
@@ -0,0 +1,59 @@
+package benchmark.site.kason.netlib.tcp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.tcp.Channel;
+
+/**
+ * The rate of new connections,each completing one 1 byte echo before it is closed.
+ * With the ssl codec the echo can not complete before the handshake,so this is the handshake rate.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandshakeBenchmark {
+
+  private static final byte[] MESSAGE = new byte[]{1};
+
+  @Param({"none", "ssl"})
+  public String codec;
+
+  private LoopbackEcho echo;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    echo = new LoopbackEcho(codec);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    echo.close();
+  }
+
+  @Benchmark
+  public void connectAndEcho() throws Exception {
+    Channel ch = echo.connect();
+    long expected = echo.getReceived() + MESSAGE.length;
+    echo.send(ch, MESSAGE);
+    echo.await(expected);
+    ch.close();
+  }
+
+}
@@ -0,0 +1,226 @@
+package benchmark.site.kason.netlib.tcp;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.net.ssl.SSLContext;
+import site.kason.netlib.codec.DeflateCodec;
+import site.kason.netlib.codec.LZ4Codec;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.ssl.SSLCodec;
+import site.kason.netlib.ssl.SSLContextUtil;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ChannelHost;
+import site.kason.netlib.tcp.ChannelOptions;
+import site.kason.netlib.tcp.ConnectionListener;
+import site.kason.netlib.tcp.ReadTask;
+import site.kason.netlib.tcp.ServerChannel;
+import site.kason.netlib.tcp.pipeline.Codec;
+import site.kason.netlib.tcp.tasks.ByteWriteTask;
+
+/**
+ * An echo server and its clients over the loopback interface,each host running in its own thread.
+ * All clients share one received-bytes counter,so the benchmark thread can wait for a whole round.
+ *
+ * @author Kason Yang
+ */
+class LoopbackEcho {
+
+  private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  private final String codec;
+
+  private final SSLContext sslContext;
+
+  private final ChannelHost serverHost;
+
+  private final ChannelHost clientHost;
+
+  private final Thread serverThread;
+
+  private final Thread clientThread;
+
+  private final SocketAddress address;
+
+  private final AtomicLong received = new AtomicLong();
+
+  private volatile Thread waiter;
+
+  /**
+   * @param codec the codec of the channels: none,ssl,deflate or lz4
+   */
+  LoopbackEcho(String codec) throws Exception {
+    this.codec = codec;
+    if ("ssl".equals(codec)) {
+      File keyStore = new File(System.getProperty("netlib.benchmark.keystore", "sslclientkeys"));
+      sslContext = SSLContextUtil.createFromKeyStore(keyStore, "net-lib");
+    } else {
+      sslContext = null;
+    }
+    //disable Nagle's algorithm,which would delay small echoes until the delayed ack of the peer
+    ChannelOptions options = new ChannelOptions();
+    options.setTcpNoDelay(true);
+    serverHost = ChannelHost.create();
+    serverHost.setChannelOptions(options);
+    clientHost = ChannelHost.create();
+    clientHost.setChannelOptions(options);
+    ServerChannel server = serverHost.createServerChannel(new InetSocketAddress("127.0.0.1", 0), ch -> {
+      for (Codec c : createCodecs(false)) {
+        ch.addCodec(c);
+      }
+      ch.read(LoopbackEcho::echo);
+    });
+    address = server.serverSocketChannel().getLocalAddress();
+    serverThread = startLoop(serverHost, "benchmark-server");
+    clientThread = startLoop(clientHost, "benchmark-client");
+  }
+
+  private static Thread startLoop(ChannelHost host, String name) throws Exception {
+    Thread t = new Thread(host::listen, name);
+    t.setDaemon(true);
+    t.start();
+    //make sure the loop thread is bound before channels are used from other threads
+    host.submit(() -> null).get();
+    return t;
+  }
+
+  private static boolean echo(Channel ch, IOBuffer buffer) {
+    byte[] data = new byte[buffer.getReadableSize()];
+    buffer.poll(data);
+    ch.write(new ByteWriteTask(data, 0, data.length));
+    return false;
+  }
+
+  private List<Codec> createCodecs(boolean clientMode) {
+    switch (codec) {
+      case "none":
+        return Collections.emptyList();
+      case "ssl":
+        return Collections.singletonList(new SSLCodec(sslContext, clientMode));
+      case "deflate":
+        return Collections.singletonList(new DeflateCodec());
+      case "lz4":
+        return Collections.singletonList(new LZ4Codec());
+      default:
+        throw new IllegalArgumentException("unknown codec:" + codec);
+    }
+  }
+
+  /**
+   * open a client channel and wait for the connection
+   */
+  Channel connect() throws Exception {
+    CompletableFuture<Channel> connected = new CompletableFuture<>();
+    clientHost.execute(() -> {
+      Channel ch = clientHost.createChannel();
+      ch.addConnectionListener(new ConnectionListener() {
+        @Override
+        public void onChannelConnected(Channel ch) {
+          connected.complete(ch);
+        }
+
+        @Override
+        public void onChannelConnectFailed(Channel ch, Exception ex) {
+          connected.completeExceptionally(ex);
+        }
+
+        @Override
+        public void onChannelClosed(Channel ch) {
+
+        }
+      });
+      ch.connect(address);
+      for (Codec c : createCodecs(true)) {
+        ch.addCodec(c);
+      }
+      ch.read(this::countReceived);
+    });
+    return connected.get(30, TimeUnit.SECONDS);
+  }
+
+  /**
+   * open a client channel without a reader,so the received bytes are left to the futures from {@link Channel#readAsync(int)}
+   */
+  Channel connectAsync() throws Exception {
+    CompletableFuture<Channel> connected = new CompletableFuture<>();
+    clientHost.execute(() -> {
+      Channel ch = clientHost.createChannel();
+      ch.connectAsync(address).whenComplete((c, ex) -> {
+        if (ex != null) {
+          connected.completeExceptionally(ex);
+        } else {
+          connected.complete(c);
+        }
+      });
+      for (Codec c : createCodecs(true)) {
+        ch.addCodec(c);
+      }
+    });
+    return connected.get(30, TimeUnit.SECONDS);
+  }
+
+  List<Channel> connect(int count) throws Exception {
+    List<Channel> channels = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      channels.add(connect());
+    }
+    return channels;
+  }
+
+  private boolean countReceived(Channel ch, IOBuffer buffer) {
+    int size = buffer.getReadableSize();
+    buffer.moveReadPosition(size);
+    received.addAndGet(size);
+    Thread w = waiter;
+    if (w != null) {
+      LockSupport.unpark(w);
+    }
+    return false;
+  }
+
+  void send(Channel ch, byte[] message) {
+    ch.write(new ByteWriteTask(message, 0, message.length));
+  }
+
+  long getReceived() {
+    return received.get();
+  }
+
+  /**
+   * wait until the clients have received {@code totalBytes} bytes in total
+   */
+  void await(long totalBytes) throws TimeoutException {
+    if (received.get() >= totalBytes) {
+      return;
+    }
+    long deadline = System.nanoTime() + TIMEOUT_NANOS;
+    waiter = Thread.currentThread();
+    try {
+      while (received.get() < totalBytes) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new TimeoutException("received " + received.get() + " of " + totalBytes + " bytes");
+        }
+        LockSupport.parkNanos(this, remaining);
+      }
+    } finally {
+      waiter = null;
+    }
+  }
+
+  void close() throws InterruptedException {
+    clientHost.stopListen();
+    serverHost.stopListen();
+    clientThread.join();
+    serverThread.join();
+  }
+
+}
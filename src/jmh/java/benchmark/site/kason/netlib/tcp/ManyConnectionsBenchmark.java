@@ -0,0 +1,70 @@
+package benchmark.site.kason.netlib.tcp;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.tcp.Channel;
+
+/**
+ * One echo on every connection per operation,
+ * which shows how the cost of a loop iteration grows with the number of channels.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManyConnectionsBenchmark {
+
+  @Param({"1", "64", "256"})
+  public int connections;
+
+  @Param({"256"})
+  public int messageSize;
+
+  private LoopbackEcho echo;
+
+  private List<Channel> channels;
+
+  private byte[] message;
+
+  private long expected;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    echo = new LoopbackEcho("none");
+    channels = echo.connect(connections);
+    message = new byte[messageSize];
+    expected = 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    echo.close();
+  }
+
+  @Benchmark
+  public void echoAll() throws Exception {
+    for (Channel ch : channels) {
+      echo.send(ch, message);
+    }
+    expected += (long) messageSize * connections;
+    echo.await(expected);
+  }
+
+}
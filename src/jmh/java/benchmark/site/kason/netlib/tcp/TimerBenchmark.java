@@ -0,0 +1,58 @@
+package benchmark.site.kason.netlib.tcp;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.tcp.ChannelHost;
+import site.kason.netlib.tcp.Timeout;
+
+/**
+ * Schedules and cancels a timeout while many others are pending,as idle timeouts of many connections do.
+ * The host never listens,so the caller is treated as its loop thread.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerBenchmark {
+
+  private static final Runnable NOOP = () -> {
+  };
+
+  @Param({"1000", "300000"})
+  public int pendingTimeouts;
+
+  private ChannelHost host;
+
+  private Random random;
+
+  @Setup
+  public void setup() throws Exception {
+    host = ChannelHost.create();
+    random = new Random(1);
+    for (int i = 0; i < pendingTimeouts; i++) {
+      host.schedule(NOOP, 1 + random.nextInt(60_000), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Benchmark
+  public boolean scheduleAndCancel() {
+    Timeout t = host.schedule(NOOP, 1 + random.nextInt(60_000), TimeUnit.MILLISECONDS);
+    return t.cancel();
+  }
+
+}
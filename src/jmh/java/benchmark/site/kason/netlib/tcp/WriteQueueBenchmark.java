@@ -0,0 +1,75 @@
+package benchmark.site.kason.netlib.tcp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.tasks.ByteWriteTask;
+
+/**
+ * Small messages queued in the event loop in batches,which stresses the task queues of the channel
+ * and the iteration overhead of the host.
+ * Run it with {@code -prof gc} to see the allocation per message ({@code gc.alloc.rate.norm}).
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteQueueBenchmark {
+
+  private static final int BATCH = 1000;
+
+  private static final int MESSAGE_SIZE = 16;
+
+  private LoopbackEcho echo;
+
+  private Channel channel;
+
+  private byte[] message;
+
+  private Runnable writeBatch;
+
+  private long expected;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    echo = new LoopbackEcho("none");
+    channel = echo.connect();
+    message = new byte[MESSAGE_SIZE];
+    writeBatch = () -> {
+      for (int i = 0; i < BATCH; i++) {
+        channel.write(new ByteWriteTask(message));
+      }
+    };
+    expected = 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    echo.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void writeSmallMessages() throws Exception {
+    channel.getHost().execute(writeBatch);
+    expected += (long) BATCH * MESSAGE_SIZE;
+    echo.await(expected);
+  }
+
+}
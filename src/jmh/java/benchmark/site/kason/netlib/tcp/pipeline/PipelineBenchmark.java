@@ -0,0 +1,89 @@
+package benchmark.site.kason.netlib.tcp.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.pipeline.Pipeline;
+import site.kason.netlib.tcp.pipeline.Processor;
+
+/**
+ * The overhead of passing data through a pipeline of 0-4 copying processors.
+ *
+ * @author Kason Yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+  @Param({"0", "1", "2", "3", "4"})
+  public int processors;
+
+  @Param({"64", "4096"})
+  public int chunkSize;
+
+  private Pipeline pipeline;
+
+  private byte[] chunk;
+
+  @Setup
+  public void setup() {
+    pipeline = new Pipeline();
+    for (int i = 0; i < processors; i++) {
+      pipeline.addProcessor(new CopyProcessor());
+    }
+    chunk = new byte[chunkSize];
+  }
+
+  @TearDown
+  public void tearDown() {
+    pipeline.release();
+  }
+
+  @Benchmark
+  public IOBuffer process() {
+    IOBuffer in = pipeline.getInBuffer();
+    IOBuffer out = pipeline.getOutBuffer();
+    in.push(chunk);
+    pipeline.process();
+    out.poll(chunk);
+    out.compact();
+    in.compact();
+    return out;
+  }
+
+  private static class CopyProcessor implements Processor {
+
+    @Override
+    public int getMinInBufferSize() {
+      return 4096;
+    }
+
+    @Override
+    public int getMinOutBufferSize() {
+      return 4096;
+    }
+
+    @Override
+    public void process(IOBuffer in, IOBuffer out) {
+      out.push(in);
+      in.compact();
+    }
+
+  }
+
+}
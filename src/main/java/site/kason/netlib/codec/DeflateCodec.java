@@ -1,18 +1,40 @@
 package site.kason.netlib.codec;
 
+import java.util.zip.Deflater;
 import site.kason.netlib.tcp.Channel;
 import site.kason.netlib.tcp.pipeline.Codec;
 import site.kason.netlib.tcp.pipeline.CodecInitProgress;
 import site.kason.netlib.tcp.pipeline.Processor;
 
 /**
+ * A codec compressing the data of a channel as one deflate stream in each direction.
+ * A codec instance holds the compression state of one channel,so it must not be shared by channels.
+ *
  * @author Kason Yang
  */
 public class DeflateCodec implements Codec {
 
-  DeflateEncodeProcessor encoder = new DeflateEncodeProcessor();
+  private final DeflateEncodeProcessor encoder;
 
-  DeflateDecodeProcessor decoder = new DeflateDecodeProcessor();
+  private final DeflateDecodeProcessor decoder;
+
+  public DeflateCodec() {
+    this(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  public DeflateCodec(int level) {
+    this(level, Deflater.DEFAULT_STRATEGY);
+  }
+
+  /**
+   * @param level the compression level (0-9)
+   * @param strategy the compression strategy
+   * @see Deflater#setStrategy(int)
+   */
+  public DeflateCodec(int level, int strategy) {
+    encoder = new DeflateEncodeProcessor(level, strategy);
+    decoder = new DeflateDecodeProcessor();
+  }
 
   @Override
   public void init(Channel channel, CodecInitProgress progress) {
@@ -28,4 +50,11 @@ public class DeflateCodec implements Codec {
   public Processor getDecoder() {
     return decoder;
   }
+
+  @Override
+  public void release() {
+    encoder.end();
+    decoder.end();
+  }
+
 }
@@ -0,0 +1,24 @@
+package site.kason.netlib.codec;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class DeflateDecodeException extends RuntimeException {
+
+  public DeflateDecodeException() {
+  }
+
+  public DeflateDecodeException(String message) {
+    super(message);
+  }
+
+  public DeflateDecodeException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public DeflateDecodeException(Throwable cause) {
+    super(cause);
+  }
+
+}
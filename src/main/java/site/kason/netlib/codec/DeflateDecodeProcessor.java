@@ -1,18 +1,25 @@
 package site.kason.netlib.codec;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 import site.kason.netlib.io.IOBuffer;
 import site.kason.netlib.tcp.pipeline.Processor;
 
 /**
+ * Decompresses the deflate stream of a channel.
+ * If the stream is finished by the peer,a new stream is expected to follow.
  *
  * @author Kason Yang
  */
 public class DeflateDecodeProcessor implements Processor {
-  
+
+  private final Inflater inflater = new Inflater();
+
+  private boolean outputPending = false;
+
+  private byte[] inputStage = new byte[0];
+
+  private byte[] outputStage = new byte[0];
 
   public DeflateDecodeProcessor() {
     
@@ -30,20 +37,46 @@ public class DeflateDecodeProcessor implements Processor {
 
   @Override
   public void process(IOBuffer in, IOBuffer out) {
-    if(in.getReadableSize()<=0) return;
-    if(out.getWritableSize()<=0) return;
-    Inflater inflater = new Inflater();
-    inflater.setInput(in.array(),in.getReadPosition(),in.getReadableSize());
-    int oldTotalIn = inflater.getTotalIn();
+    int inSize = in.getReadableSize();
+    if (inSize <= 0 && !outputPending) return;
+    int outSize = out.getWritableSize();
+    if (outSize <= 0) return;
+    if (in.hasArray()) {
+      inflater.setInput(in.array(), in.getReadPosition(), inSize);
+    } else {
+      if (inputStage.length < inSize) {
+        inputStage = new byte[inSize];
+      }
+      in.peek(inputStage, 0, inSize);
+      inflater.setInput(inputStage, 0, inSize);
+    }
+    int result;
     try {
-      int result = inflater.inflate(out.array(), out.getWritePosition(), out.getWritableSize());
-      out.setWritePosition(out.getWritePosition()+result);
-      int consumed = inflater.getTotalIn() - oldTotalIn;
-      in.moveReadPosition(consumed);
+      if (out.hasArray()) {
+        result = inflater.inflate(out.array(), out.getWritePosition(), outSize);
+        out.moveWritePosition(result);
+      } else {
+        if (outputStage.length < outSize) {
+          outputStage = new byte[outSize];
+        }
+        result = inflater.inflate(outputStage, 0, outSize);
+        out.push(outputStage, 0, result);
+      }
     } catch (DataFormatException ex) {
-      //TODO handle ex
-      throw new RuntimeException(ex);
+      throw new DeflateDecodeException(ex);
+    }
+    in.moveReadPosition(inSize - inflater.getRemaining());
+    outputPending = result == outSize;
+    if (inflater.finished()) {
+      inflater.reset();
     }
   }
 
+  /**
+   * release the native resources of the inflater.The processor must not be used after ended.
+   */
+  public void end() {
+    inflater.end();
+  }
+
 }
@@ -5,12 +5,33 @@ import site.kason.netlib.io.IOBuffer;
 import site.kason.netlib.tcp.pipeline.Processor;
 
 /**
+ * Compresses the data of a channel as one deflate stream.
+ * Every call flushes the compressed data with {@link Deflater#SYNC_FLUSH},so the peer can decode it at once.
  *
  * @author Kason Yang
  */
 public class DeflateEncodeProcessor implements Processor {
 
+  private final Deflater deflater;
+
+  private boolean outputPending = false;
+
+  private byte[] inputStage = new byte[0];
+
+  private byte[] outputStage = new byte[0];
+
   public DeflateEncodeProcessor() {
+    this(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+  }
+
+  /**
+   * @param level the compression level (0-9)
+   * @param strategy the compression strategy
+   * @see Deflater#setStrategy(int)
+   */
+  public DeflateEncodeProcessor(int level, int strategy) {
+    deflater = new Deflater(level);
+    deflater.setStrategy(strategy);
   }
 
   @Override
@@ -25,16 +46,41 @@ public class DeflateEncodeProcessor implements Processor {
 
   @Override
   public void process(IOBuffer in, IOBuffer out) {
-    if(in.getReadableSize()<=0) return;
-    if(out.getWritableSize()<=0) return;
-    Deflater deflater = new Deflater();
-    deflater.setInput(in.array(),in.getReadPosition(),in.getReadableSize());
-    deflater.finish();
-    int oldTotalIn = deflater.getTotalIn();
-    int result = deflater.deflate(out.array(),out.getWritePosition(),out.getWritableSize());
-    out.setWritePosition(out.getWritePosition()+result);
-    int consumed = deflater.getTotalIn() - oldTotalIn;
-    in.moveReadPosition(consumed);
+    int inSize = in.getReadableSize();
+    if (inSize <= 0 && !outputPending) return;
+    int outSize = out.getWritableSize();
+    if (outSize <= 0) return;
+    if (in.hasArray()) {
+      deflater.setInput(in.array(), in.getReadPosition(), inSize);
+    } else {
+      if (inputStage.length < inSize) {
+        inputStage = new byte[inSize];
+      }
+      in.peek(inputStage, 0, inSize);
+      deflater.setInput(inputStage, 0, inSize);
+    }
+    long oldBytesRead = deflater.getBytesRead();
+    int result;
+    if (out.hasArray()) {
+      result = deflater.deflate(out.array(), out.getWritePosition(), outSize, Deflater.SYNC_FLUSH);
+      out.moveWritePosition(result);
+    } else {
+      if (outputStage.length < outSize) {
+        outputStage = new byte[outSize];
+      }
+      result = deflater.deflate(outputStage, 0, outSize, Deflater.SYNC_FLUSH);
+      out.push(outputStage, 0, result);
+    }
+    in.moveReadPosition((int) (deflater.getBytesRead() - oldBytesRead));
+    //a full output buffer means more compressed data may be pending in the deflater
+    outputPending = result == outSize;
+  }
+
+  /**
+   * release the native resources of the deflater.The processor must not be used after ended.
+   */
+  public void end() {
+    deflater.end();
   }
 
 }
@@ -0,0 +1,131 @@
+package site.kason.netlib.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ReadTask;
+import site.kason.netlib.tcp.WriteTask;
+
+/**
+ * Frames messages with a delimiter following the payload,such as lines ended by {@code \n}.
+ * Frames are written by the tasks from {@link #newWriteTask(byte[], int, int)}
+ * and read by the task from {@link #newReadTask(FrameReadTask)},which delivers every complete frame without the delimiter to a {@link FrameReadTask}.
+ * The delimiter is searched 8 bytes at a time by {@link DelimiterScanner}.
+ * A frame which fits in the read buffer is delivered in place,a larger one is assembled in a buffer from the allocator of the channel.
+ * The codec is stateless and could be shared by channels.
+ *
+ * @author Kason Yang
+ */
+public class DelimiterFrameCodec {
+
+  public static final int DEFAULT_MAX_FRAME_LENGTH = 8192;
+
+  private static final byte[] LF = "\n".getBytes(StandardCharsets.US_ASCII);
+
+  private final byte[] delimiter;
+
+  private final int maxFrameLength;
+
+  private final boolean stripCarriageReturn;
+
+  /**
+   * create a codec for lines ended by {@code \n} or {@code \r\n},with the max line length {@link #DEFAULT_MAX_FRAME_LENGTH}
+   */
+  public static DelimiterFrameCodec lines() {
+    return lines(DEFAULT_MAX_FRAME_LENGTH);
+  }
+
+  /**
+   * create a codec for lines ended by {@code \n} or {@code \r\n}.
+   * The lines are written with {@code \n}.
+   *
+   * @param maxLineLength the max length of a line,excluding the line ending
+   * @return the codec
+   */
+  public static DelimiterFrameCodec lines(int maxLineLength) {
+    return new DelimiterFrameCodec(LF, maxLineLength, true);
+  }
+
+  /**
+   * @param delimiter the delimiter
+   * @param maxFrameLength the max length of the payload of a frame
+   */
+  public DelimiterFrameCodec(byte[] delimiter, int maxFrameLength) {
+    this(delimiter, maxFrameLength, false);
+  }
+
+  private DelimiterFrameCodec(byte[] delimiter, int maxFrameLength, boolean stripCarriageReturn) {
+    if (delimiter.length == 0) {
+      throw new IllegalArgumentException("non-empty delimiter required.");
+    }
+    if (maxFrameLength < 0) {
+      throw new IllegalArgumentException("non-negative max frame length required.");
+    }
+    this.delimiter = delimiter.clone();
+    this.maxFrameLength = maxFrameLength;
+    this.stripCarriageReturn = stripCarriageReturn;
+  }
+
+  public byte[] getDelimiter() {
+    return delimiter.clone();
+  }
+
+  public int getMaxFrameLength() {
+    return maxFrameLength;
+  }
+
+  /**
+   * @return true if a {@code \r} before the delimiter is removed from frames
+   */
+  public boolean isStripCarriageReturn() {
+    return stripCarriageReturn;
+  }
+
+  byte[] delimiter() {
+    return delimiter;
+  }
+
+  /**
+   * create a task which reads frames until the frame task is finished
+   *
+   * @param task the task which handles the frames
+   * @return the read task
+   */
+  public ReadTask newReadTask(FrameReadTask task) {
+    return new DelimiterFrameReadTask(this, task);
+  }
+
+  /**
+   * read the next frame of the channel
+   *
+   * @param channel the channel
+   * @return a future completed with the payload of the frame in the event loop of the channel
+   */
+  public CompletableFuture<byte[]> readFrameAsync(Channel channel) {
+    FrameReadFuture future = new FrameReadFuture();
+    future.setFrameReader(newReadTask(future));
+    return channel.readAsync(future);
+  }
+
+  public WriteTask newWriteTask(byte[] payload) {
+    return newWriteTask(payload, 0, payload.length);
+  }
+
+  /**
+   * create a task which writes a frame.The payload must not contain the delimiter.
+   *
+   * @param payload the payload
+   * @param offset the offset of the payload
+   * @param length the length of the payload
+   * @return the write task
+   * @throws TooLongFrameException if the length exceeds the max frame length
+   */
+  public WriteTask newWriteTask(byte[] payload, int offset, int length) {
+    if (length > maxFrameLength) {
+      throw new TooLongFrameException("frame length " + length + " exceeds " + maxFrameLength);
+    }
+    return new FrameWriteTask(ByteBuffer.wrap(payload, offset, length), ByteBuffer.wrap(delimiter));
+  }
+
+}
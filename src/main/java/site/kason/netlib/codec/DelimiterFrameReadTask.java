@@ -0,0 +1,201 @@
+package site.kason.netlib.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ReadTask;
+
+/**
+ * Splits the read data into frames ended by a delimiter.
+ * A complete frame in the read buffer is delivered in place by narrowing the readable bytes of the buffer.
+ * The bytes already scanned are remembered so every byte is scanned once.
+ * If the read buffer is full without a delimiter,the bytes are spilled into a buffer from the allocator of the channel,
+ * which starts at {@link #INITIAL_SPILL_SIZE} bytes and doubles until the delimiter is found.
+ * Only the bytes before the delimiter are spilled,so the bytes after it stay in the read buffer for the next task.
+ *
+ * @author Kason Yang
+ */
+class DelimiterFrameReadTask implements ReadTask {
+
+  static final int INITIAL_SPILL_SIZE = 16 * 1024;
+
+  private static final byte CR = '\r';
+
+  private final DelimiterFrameCodec codec;
+
+  private final byte[] delimiter;
+
+  private final FrameReadTask task;
+
+  private IOBuffer spill;
+
+  /**
+   * the count of readable bytes which are scanned without finding a delimiter
+   */
+  private int scanned;
+
+  DelimiterFrameReadTask(DelimiterFrameCodec codec, FrameReadTask task) {
+    this.codec = codec;
+    this.delimiter = codec.delimiter();
+    this.task = task;
+  }
+
+  @Override
+  public boolean handleRead(Channel channel, IOBuffer buffer) {
+    for (;;) {
+      if (spill != null) {
+        int status = fillSpill(channel, buffer);
+        if (status < 0) {
+          return false;
+        }
+        IOBuffer frame = spill;
+        spill = null;
+        try {
+          frame.setWritePosition(frame.getWritePosition() - status);
+          stripCarriageReturn(frame, frame.getReadPosition());
+          if (task.handleFrame(channel, frame)) {
+            return true;
+          }
+        } finally {
+          frame.release();
+        }
+        continue;
+      }
+      int readPosition = buffer.getReadPosition();
+      int writePosition = buffer.getWritePosition();
+      int idx = DelimiterScanner.indexOf(view(buffer), readPosition + scanned, writePosition, delimiter);
+      if (idx >= 0) {
+        scanned = 0;
+        checkFrameLength(idx - readPosition);
+        if (deliverInPlace(channel, buffer, idx)) {
+          return true;
+        }
+        continue;
+      }
+      int readable = writePosition - readPosition;
+      //the tail may be the beginning of a delimiter
+      scanned = Math.max(0, readable - delimiter.length + 1);
+      checkFrameLength(scanned);
+      if (buffer.getWritableSize() > 0 || readPosition > 0) {
+        //wait for more bytes,the buffer is compacted before read again
+        return false;
+      }
+      spill = allocateSpill(channel, INITIAL_SPILL_SIZE);
+      scanned = 0;
+    }
+  }
+
+  private boolean deliverInPlace(Channel channel, IOBuffer buffer, int delimiterIndex) {
+    int writePosition = buffer.getWritePosition();
+    buffer.setWritePosition(delimiterIndex);
+    stripCarriageReturn(buffer, buffer.getReadPosition());
+    try {
+      return task.handleFrame(channel, buffer);
+    } finally {
+      buffer.setWritePosition(writePosition);
+      buffer.setReadPosition(delimiterIndex + delimiter.length);
+    }
+  }
+
+  /**
+   * move the bytes before the delimiter from the read buffer into the spill
+   *
+   * @return -1 if the delimiter is not found yet,otherwise the count of delimiter bytes at the end of the spill,
+   * which have to be removed from the frame
+   */
+  private int fillSpill(Channel channel, IOBuffer buffer) {
+    int spanned = matchSpanningDelimiter(buffer);
+    if (spanned > 0) {
+      buffer.moveReadPosition(delimiter.length - spanned);
+      return spanned;
+    } else if (spanned < 0) {
+      return -1;
+    }
+    int readPosition = buffer.getReadPosition();
+    int writePosition = buffer.getWritePosition();
+    int idx = DelimiterScanner.indexOf(view(buffer), readPosition, writePosition, delimiter);
+    int size = (idx >= 0 ? idx : writePosition) - readPosition;
+    //without a delimiter,the tail may be the beginning of one
+    checkFrameLength(spill.getReadableSize() + size - (idx >= 0 ? 0 : delimiter.length - 1));
+    if (spill.getWritableSize() < size) {
+      long required = (long) spill.getReadableSize() + size;
+      long capacity = spill.capacity();
+      while (capacity < required) {
+        capacity *= 2;
+      }
+      IOBuffer grown = allocateSpill(channel, (int) Math.min(capacity, (long) codec.getMaxFrameLength() + delimiter.length));
+      grown.push(spill);
+      spill.release();
+      spill = grown;
+    }
+    buffer.setWritePosition(readPosition + size);
+    try {
+      spill.push(buffer);
+    } finally {
+      buffer.setWritePosition(writePosition);
+    }
+    if (idx < 0) {
+      return -1;
+    }
+    buffer.moveReadPosition(delimiter.length);
+    return 0;
+  }
+
+  /**
+   * check whether the delimiter begins at the end of the spill and ends in the read buffer
+   *
+   * @return the count of delimiter bytes in the spill if matched,
+   * -1 if the delimiter may match when more bytes are read,otherwise 0
+   */
+  private int matchSpanningDelimiter(IOBuffer buffer) {
+    int spillEnd = spill.getWritePosition();
+    int maxInSpill = Math.min(delimiter.length - 1, spill.getReadableSize());
+    if (maxInSpill <= 0) {
+      return 0;
+    }
+    ByteBuffer spillView = view(spill);
+    ByteBuffer bufferView = view(buffer);
+    int readPosition = buffer.getReadPosition();
+    int readable = buffer.getReadableSize();
+    //the more bytes in the spill,the earlier the delimiter
+    for (int k = maxInSpill; k > 0; k--) {
+      if (!DelimiterScanner.matches(spillView, spillEnd - k, delimiter, 0, k)) {
+        continue;
+      }
+      int rest = delimiter.length - k;
+      if (readable < rest) {
+        if (DelimiterScanner.matches(bufferView, readPosition, delimiter, k, k + readable)) {
+          return -1;
+        }
+        continue;
+      }
+      if (DelimiterScanner.matches(bufferView, readPosition, delimiter, k, delimiter.length)) {
+        return k;
+      }
+    }
+    return 0;
+  }
+
+  private void stripCarriageReturn(IOBuffer frame, int frameStart) {
+    int end = frame.getWritePosition();
+    if (codec.isStripCarriageReturn() && end > frameStart && view(frame).get(end - 1) == CR) {
+      frame.setWritePosition(end - 1);
+    }
+  }
+
+  private void checkFrameLength(int length) {
+    if (length > codec.getMaxFrameLength()) {
+      throw new TooLongFrameException("frame length " + length + " exceeds " + codec.getMaxFrameLength());
+    }
+  }
+
+  private static ByteBuffer view(IOBuffer buffer) {
+    return buffer.nioBuffer(0, buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static IOBuffer allocateSpill(Channel channel, int capacity) {
+    return channel.getBufferAllocator().allocate(capacity);
+  }
+
+}
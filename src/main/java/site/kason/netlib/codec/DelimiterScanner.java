@@ -0,0 +1,88 @@
+package site.kason.netlib.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finds bytes in buffers 8 bytes at a time (SWAR,SIMD within a register).
+ *
+ * @author Kason Yang
+ */
+public final class DelimiterScanner {
+
+  private static final long ONES = 0x0101010101010101L;
+
+  private static final long HIGHS = 0x8080808080808080L;
+
+  private DelimiterScanner() {
+  }
+
+  /**
+   * find the first occurrence of a byte
+   *
+   * @param buffer the buffer,which is read by absolute indexes and must be in little endian order
+   * @param from the index to start from,inclusive
+   * @param to the index to stop at,exclusive
+   * @param value the byte to find
+   * @return the index of the byte,or -1 if not found
+   */
+  public static int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+    if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+      throw new IllegalArgumentException("little endian buffer required.");
+    }
+    long pattern = ONES * (value & 0xFF);
+    int i = from;
+    for (; i + 8 <= to; i += 8) {
+      long x = buffer.getLong(i) ^ pattern;
+      //a zero byte of x sets its high bit,bits above the lowest zero byte may be false positives
+      long found = (x - ONES) & ~x & HIGHS;
+      if (found != 0) {
+        return i + (Long.numberOfTrailingZeros(found) >>> 3);
+      }
+    }
+    for (; i < to; i++) {
+      if (buffer.get(i) == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * find the first complete occurrence of a byte sequence
+   *
+   * @param buffer the buffer,which is read by absolute indexes and must be in little endian order
+   * @param from the index to start from,inclusive
+   * @param to the index to stop at,exclusive
+   * @param sequence the bytes to find
+   * @return the index of the sequence,or -1 if not found
+   */
+  public static int indexOf(ByteBuffer buffer, int from, int to, byte[] sequence) {
+    int last = to - sequence.length;
+    int i = from;
+    while (i <= last) {
+      int idx = indexOf(buffer, i, last + 1, sequence[0]);
+      if (idx < 0) {
+        return -1;
+      }
+      if (matches(buffer, idx + 1, sequence, 1, sequence.length)) {
+        return idx;
+      }
+      i = idx + 1;
+    }
+    return -1;
+  }
+
+  /**
+   * check whether the bytes from {@code index} equal the bytes of {@code sequence} between {@code from} and {@code to}
+   */
+  static boolean matches(ByteBuffer buffer, int index, byte[] sequence, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer.get(index + i - from) != sequence[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
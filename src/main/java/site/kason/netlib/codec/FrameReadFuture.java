@@ -0,0 +1,34 @@
+package site.kason.netlib.codec;
+
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ReadFuture;
+import site.kason.netlib.tcp.ReadTask;
+
+/**
+ * Reads a frame into an array.
+ *
+ * @author Kason Yang
+ */
+class FrameReadFuture extends ReadFuture<byte[]> implements FrameReadTask {
+
+  private ReadTask frameReader;
+
+  void setFrameReader(ReadTask frameReader) {
+    this.frameReader = frameReader;
+  }
+
+  @Override
+  protected boolean handleData(Channel channel, IOBuffer buffer) {
+    return frameReader.handleRead(channel, buffer);
+  }
+
+  @Override
+  public boolean handleFrame(Channel channel, IOBuffer frame) {
+    byte[] data = new byte[frame.getReadableSize()];
+    frame.poll(data);
+    succeed(data);
+    return true;
+  }
+
+}
@@ -0,0 +1,21 @@
+package site.kason.netlib.codec;
+
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+
+/**
+ * Handles the frames decoded by {@link LengthFieldFrameCodec} or {@link DelimiterFrameCodec}.
+ *
+ * @author Kason Yang
+ */
+public interface FrameReadTask {
+
+  /**
+   * @param channel the channel
+   * @param frame the buffer whose readable bytes are exactly the payload of the frame.
+   *              It is only valid during the call and must not be written.
+   * @return true if the task is finished and no more frames should be delivered to it
+   */
+  boolean handleFrame(Channel channel, IOBuffer frame);
+
+}
@@ -0,0 +1,43 @@
+package site.kason.netlib.codec;
+
+import java.nio.ByteBuffer;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.WriteTask;
+
+/**
+ * Writes the two parts of a frame in order,such as the length field and the tail,or the tail and the delimiter.
+ *
+ * @author Kason Yang
+ */
+class FrameWriteTask implements WriteTask {
+
+  private final ByteBuffer head;
+
+  private final ByteBuffer tail;
+
+  private final long size;
+
+  FrameWriteTask(ByteBuffer head, ByteBuffer tail) {
+    this.head = head;
+    this.tail = tail;
+    this.size = head.remaining() + tail.remaining();
+  }
+
+  @Override
+  public boolean handleWrite(Channel channel, IOBuffer buffer) {
+    if (head.hasRemaining()) {
+      buffer.push(head);
+    }
+    if (!head.hasRemaining() && tail.hasRemaining()) {
+      buffer.push(tail);
+    }
+    return !head.hasRemaining() && !tail.hasRemaining();
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+}
@@ -0,0 +1,204 @@
+package site.kason.netlib.codec;
+
+import java.util.Arrays;
+
+/**
+ * Compression and decompression of single blocks in the LZ4 block format.
+ * The compressor is the greedy single-probe variant with a 4096 entries hash table.
+ *
+ * @author Kason Yang
+ */
+class LZ4Block {
+
+  private static final int HASH_LOG = 12;
+
+  static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+
+  private static final int MIN_MATCH = 4;
+
+  private static final int LAST_LITERALS = 5;
+
+  private static final int MF_LIMIT = 12;
+
+  private static final int MAX_DISTANCE = 65535;
+
+  private static final int SKIP_STRENGTH = 6;
+
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * compress a block
+   *
+   * @param src the source array
+   * @param srcOff the offset of the source
+   * @param srcLen the length of the source
+   * @param dest the destination array,which must have {@link #maxCompressedLength(int)} bytes available
+   * @param destOff the offset of the destination
+   * @param hashTable a table of {@link #HASH_TABLE_SIZE} entries,which is overwritten
+   * @return the length of the compressed block
+   */
+  static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int[] hashTable) {
+    int srcEnd = srcOff + srcLen;
+    int dp = destOff;
+    int anchor = srcOff;
+    if (srcLen >= MF_LIMIT + 1) {
+      Arrays.fill(hashTable, -1);
+      int matchLimit = srcEnd - MF_LIMIT;
+      int copyLimit = srcEnd - LAST_LITERALS;
+      int sp = srcOff;
+      while (sp < matchLimit) {
+        int seq = readInt(src, sp);
+        int h = hash(seq);
+        int ref = hashTable[h];
+        hashTable[h] = sp;
+        if (ref < 0 || sp - ref > MAX_DISTANCE || readInt(src, ref) != seq) {
+          sp += 1 + ((sp - anchor) >>> SKIP_STRENGTH);
+          continue;
+        }
+        while (sp > anchor && ref > srcOff && src[sp - 1] == src[ref - 1]) {
+          sp--;
+          ref--;
+        }
+        int matchLen = MIN_MATCH;
+        while (sp + matchLen < copyLimit && src[sp + matchLen] == src[ref + matchLen]) {
+          matchLen++;
+        }
+        dp = writeSequence(src, anchor, sp - anchor, sp - ref, matchLen, dest, dp);
+        sp += matchLen;
+        anchor = sp;
+      }
+    }
+    dp = writeLastLiterals(src, anchor, srcEnd - anchor, dest, dp);
+    return dp - destOff;
+  }
+
+  /**
+   * decompress a block
+   *
+   * @param src the source array
+   * @param srcOff the offset of the compressed block
+   * @param srcLen the length of the compressed block
+   * @param dest the destination array
+   * @param destOff the offset of the destination
+   * @param destLen the max length of the decompressed data
+   * @return the length of the decompressed data
+   * @throws LZ4DecodeException if the block is malformed
+   */
+  static int decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen) {
+    int srcEnd = srcOff + srcLen;
+    int destEnd = destOff + destLen;
+    int sp = srcOff;
+    int dp = destOff;
+    while (sp < srcEnd) {
+      int token = src[sp++] & 0xFF;
+      int litLen = token >>> 4;
+      if (litLen == 15) {
+        int b;
+        do {
+          if (sp >= srcEnd) {
+            throw new LZ4DecodeException("malformed literal length");
+          }
+          b = src[sp++] & 0xFF;
+          litLen += b;
+        } while (b == 255);
+      }
+      if (litLen > srcEnd - sp || litLen > destEnd - dp) {
+        throw new LZ4DecodeException("literals out of bounds");
+      }
+      System.arraycopy(src, sp, dest, dp, litLen);
+      sp += litLen;
+      dp += litLen;
+      if (sp == srcEnd) {
+        break;
+      }
+      if (srcEnd - sp < 2) {
+        throw new LZ4DecodeException("malformed match offset");
+      }
+      int offset = (src[sp] & 0xFF) | ((src[sp + 1] & 0xFF) << 8);
+      sp += 2;
+      if (offset == 0 || offset > dp - destOff) {
+        throw new LZ4DecodeException("match offset out of bounds");
+      }
+      int matchLen = token & 0x0F;
+      if (matchLen == 15) {
+        int b;
+        do {
+          if (sp >= srcEnd) {
+            throw new LZ4DecodeException("malformed match length");
+          }
+          b = src[sp++] & 0xFF;
+          matchLen += b;
+        } while (b == 255);
+      }
+      matchLen += MIN_MATCH;
+      if (matchLen > destEnd - dp) {
+        throw new LZ4DecodeException("match out of bounds");
+      }
+      int ref = dp - offset;
+      if (offset >= matchLen) {
+        System.arraycopy(dest, ref, dest, dp, matchLen);
+        dp += matchLen;
+      } else {
+        for (int i = 0; i < matchLen; i++) {
+          dest[dp++] = dest[ref++];
+        }
+      }
+    }
+    return dp - destOff;
+  }
+
+  private static int writeSequence(byte[] src, int litOff, int litLen, int offset, int matchLen, byte[] dest, int dp) {
+    int tokenPos = dp++;
+    int token;
+    if (litLen >= 15) {
+      token = 15 << 4;
+      dp = writeLength(litLen - 15, dest, dp);
+    } else {
+      token = litLen << 4;
+    }
+    System.arraycopy(src, litOff, dest, dp, litLen);
+    dp += litLen;
+    dest[dp++] = (byte) offset;
+    dest[dp++] = (byte) (offset >>> 8);
+    int ml = matchLen - MIN_MATCH;
+    if (ml >= 15) {
+      token |= 15;
+      dp = writeLength(ml - 15, dest, dp);
+    } else {
+      token |= ml;
+    }
+    dest[tokenPos] = (byte) token;
+    return dp;
+  }
+
+  private static int writeLastLiterals(byte[] src, int litOff, int litLen, byte[] dest, int dp) {
+    if (litLen >= 15) {
+      dest[dp++] = (byte) (15 << 4);
+      dp = writeLength(litLen - 15, dest, dp);
+    } else {
+      dest[dp++] = (byte) (litLen << 4);
+    }
+    System.arraycopy(src, litOff, dest, dp, litLen);
+    return dp + litLen;
+  }
+
+  private static int writeLength(int len, byte[] dest, int dp) {
+    while (len >= 255) {
+      dest[dp++] = (byte) 255;
+      len -= 255;
+    }
+    dest[dp++] = (byte) len;
+    return dp;
+  }
+
+  private static int readInt(byte[] buf, int i) {
+    return (buf[i] & 0xFF) | ((buf[i + 1] & 0xFF) << 8) | ((buf[i + 2] & 0xFF) << 16) | (buf[i + 3] << 24);
+  }
+
+  private static int hash(int seq) {
+    return (seq * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+}
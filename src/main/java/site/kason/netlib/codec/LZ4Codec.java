@@ -0,0 +1,54 @@
+package site.kason.netlib.codec;
+
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.pipeline.Codec;
+import site.kason.netlib.tcp.pipeline.CodecInitProgress;
+import site.kason.netlib.tcp.pipeline.Processor;
+
+/**
+ * A fast compression codec in the LZ4 block format.
+ * The data is split into independently compressed blocks,each framed with its type and lengths.
+ * Both peers must use the same block size.
+ *
+ * @author Kason Yang
+ */
+public class LZ4Codec implements Codec {
+
+  public static final int DEFAULT_BLOCK_SIZE = 16 * 1024;
+
+  private final LZ4EncodeProcessor encoder;
+
+  private final LZ4DecodeProcessor decoder;
+
+  public LZ4Codec() {
+    this(DEFAULT_BLOCK_SIZE, true);
+  }
+
+  /**
+   * @param blockSize the max length of uncompressed data per block
+   * @param compressOnlyIfSmaller whether to send a block uncompressed if compression does not shrink it
+   */
+  public LZ4Codec(int blockSize, boolean compressOnlyIfSmaller) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("positive block size required.");
+    }
+    encoder = new LZ4EncodeProcessor(blockSize, compressOnlyIfSmaller);
+    decoder = new LZ4DecodeProcessor(blockSize);
+  }
+
+  @Override
+  public void init(Channel channel, CodecInitProgress progress) {
+    progress.done();
+  }
+
+  @Override
+  public Processor getEncoder() {
+    return encoder;
+  }
+
+  @Override
+  public Processor getDecoder() {
+    return decoder;
+  }
+
+}
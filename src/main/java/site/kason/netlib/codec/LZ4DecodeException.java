@@ -0,0 +1,24 @@
+package site.kason.netlib.codec;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class LZ4DecodeException extends RuntimeException {
+
+  public LZ4DecodeException() {
+  }
+
+  public LZ4DecodeException(String message) {
+    super(message);
+  }
+
+  public LZ4DecodeException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public LZ4DecodeException(Throwable cause) {
+    super(cause);
+  }
+
+}
@@ -0,0 +1,99 @@
+package site.kason.netlib.codec;
+
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.pipeline.Processor;
+
+/**
+ * Decodes the blocks produced by {@link LZ4EncodeProcessor}.
+ * The block size must not be less than the block size of the peer.
+ *
+ * @author Kason Yang
+ */
+public class LZ4DecodeProcessor implements Processor {
+
+  private final int blockSize;
+
+  private final byte[] header = new byte[LZ4Frame.HEADER_LENGTH];
+
+  private byte[] inputStage = new byte[0];
+
+  private byte[] outputStage = new byte[0];
+
+  public LZ4DecodeProcessor(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  @Override
+  public int getMinInBufferSize() {
+    return LZ4Frame.HEADER_LENGTH + LZ4Block.maxCompressedLength(blockSize);
+  }
+
+  @Override
+  public int getMinOutBufferSize() {
+    return blockSize;
+  }
+
+  @Override
+  public void process(IOBuffer in, IOBuffer out) {
+    for (;;) {
+      if (in.getReadableSize() < LZ4Frame.HEADER_LENGTH) {
+        return;
+      }
+      in.peek(header, 0, LZ4Frame.HEADER_LENGTH);
+      byte type = header[0];
+      int payloadLen = LZ4Frame.readInt(header, 1);
+      int originalLen = LZ4Frame.readInt(header, 5);
+      if (type != LZ4Frame.TYPE_RAW && type != LZ4Frame.TYPE_COMPRESSED) {
+        throw new LZ4DecodeException("unknown block type:" + type);
+      }
+      if (originalLen < 0 || originalLen > blockSize
+          || payloadLen < 0 || payloadLen > LZ4Block.maxCompressedLength(originalLen)
+          || (type == LZ4Frame.TYPE_RAW && payloadLen != originalLen)) {
+        throw new LZ4DecodeException("illegal block length:" + payloadLen + "/" + originalLen);
+      }
+      int frameLen = LZ4Frame.HEADER_LENGTH + payloadLen;
+      if (in.getReadableSize() < frameLen || out.getWritableSize() < originalLen) {
+        return;
+      }
+      in.moveReadPosition(LZ4Frame.HEADER_LENGTH);
+      if (type == LZ4Frame.TYPE_RAW) {
+        if (in.hasArray()) {
+          out.push(in.array(), in.getReadPosition(), payloadLen);
+        } else {
+          out.push(in.nioBuffer(in.getReadPosition(), payloadLen));
+        }
+        in.moveReadPosition(payloadLen);
+        continue;
+      }
+      byte[] src;
+      int srcOff;
+      if (in.hasArray()) {
+        src = in.array();
+        srcOff = in.getReadPosition();
+      } else {
+        if (inputStage.length < payloadLen) {
+          inputStage = new byte[payloadLen];
+        }
+        in.peek(inputStage, 0, payloadLen);
+        src = inputStage;
+        srcOff = 0;
+      }
+      int decoded;
+      if (out.hasArray()) {
+        decoded = LZ4Block.decompress(src, srcOff, payloadLen, out.array(), out.getWritePosition(), originalLen);
+        out.moveWritePosition(decoded);
+      } else {
+        if (outputStage.length < originalLen) {
+          outputStage = new byte[originalLen];
+        }
+        decoded = LZ4Block.decompress(src, srcOff, payloadLen, outputStage, 0, originalLen);
+        out.push(outputStage, 0, decoded);
+      }
+      if (decoded != originalLen) {
+        throw new LZ4DecodeException("block decoded to " + decoded + " bytes but " + originalLen + " expected");
+      }
+      in.moveReadPosition(payloadLen);
+    }
+  }
+
+}
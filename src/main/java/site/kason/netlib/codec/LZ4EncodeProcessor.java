@@ -0,0 +1,98 @@
+package site.kason.netlib.codec;
+
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.pipeline.Processor;
+
+/**
+ * Splits the data into blocks of at most {@code blockSize} bytes and compresses every block independently.
+ *
+ * @author Kason Yang
+ */
+public class LZ4EncodeProcessor implements Processor {
+
+  private final int blockSize;
+
+  private final boolean compressOnlyIfSmaller;
+
+  private final int[] hashTable = new int[LZ4Block.HASH_TABLE_SIZE];
+
+  private byte[] inputStage = new byte[0];
+
+  private byte[] outputStage = new byte[0];
+
+  /**
+   * @param blockSize the max length of uncompressed data per block
+   * @param compressOnlyIfSmaller whether to send a block uncompressed if compression does not shrink it
+   */
+  public LZ4EncodeProcessor(int blockSize, boolean compressOnlyIfSmaller) {
+    this.blockSize = blockSize;
+    this.compressOnlyIfSmaller = compressOnlyIfSmaller;
+  }
+
+  @Override
+  public int getMinInBufferSize() {
+    return blockSize;
+  }
+
+  @Override
+  public int getMinOutBufferSize() {
+    return LZ4Frame.HEADER_LENGTH + LZ4Block.maxCompressedLength(blockSize);
+  }
+
+  @Override
+  public void process(IOBuffer in, IOBuffer out) {
+    for (;;) {
+      int len = Math.min(in.getReadableSize(), blockSize);
+      if (len <= 0) {
+        return;
+      }
+      int maxFrameLen = LZ4Frame.HEADER_LENGTH + LZ4Block.maxCompressedLength(len);
+      if (out.getWritableSize() < maxFrameLen) {
+        return;
+      }
+      byte[] src;
+      int srcOff;
+      if (in.hasArray()) {
+        src = in.array();
+        srcOff = in.getReadPosition();
+      } else {
+        if (inputStage.length < len) {
+          inputStage = new byte[len];
+        }
+        in.peek(inputStage, 0, len);
+        src = inputStage;
+        srcOff = 0;
+      }
+      byte[] dest;
+      int destOff;
+      if (out.hasArray()) {
+        dest = out.array();
+        destOff = out.getWritePosition();
+      } else {
+        if (outputStage.length < maxFrameLen) {
+          outputStage = new byte[maxFrameLen];
+        }
+        dest = outputStage;
+        destOff = 0;
+      }
+      int payloadOff = destOff + LZ4Frame.HEADER_LENGTH;
+      int compressedLen = LZ4Block.compress(src, srcOff, len, dest, payloadOff, hashTable);
+      int frameLen;
+      if (compressOnlyIfSmaller && compressedLen >= len) {
+        System.arraycopy(src, srcOff, dest, payloadOff, len);
+        LZ4Frame.writeHeader(dest, destOff, LZ4Frame.TYPE_RAW, len, len);
+        frameLen = LZ4Frame.HEADER_LENGTH + len;
+      } else {
+        LZ4Frame.writeHeader(dest, destOff, LZ4Frame.TYPE_COMPRESSED, compressedLen, len);
+        frameLen = LZ4Frame.HEADER_LENGTH + compressedLen;
+      }
+      if (out.hasArray()) {
+        out.moveWritePosition(frameLen);
+      } else {
+        out.push(dest, 0, frameLen);
+      }
+      in.moveReadPosition(len);
+    }
+  }
+
+}
@@ -0,0 +1,34 @@
+package site.kason.netlib.codec;
+
+/**
+ * The frame header of {@link LZ4Codec}: 1 byte block type,4 bytes payload length and 4 bytes original length,
+ * all integers in big endian.
+ *
+ * @author Kason Yang
+ */
+class LZ4Frame {
+
+  static final int HEADER_LENGTH = 9;
+
+  static final byte TYPE_RAW = 0;
+
+  static final byte TYPE_COMPRESSED = 1;
+
+  static void writeHeader(byte[] buf, int off, byte type, int payloadLength, int originalLength) {
+    buf[off] = type;
+    writeInt(buf, off + 1, payloadLength);
+    writeInt(buf, off + 5, originalLength);
+  }
+
+  static int readInt(byte[] buf, int off) {
+    return ((buf[off] & 0xFF) << 24) | ((buf[off + 1] & 0xFF) << 16) | ((buf[off + 2] & 0xFF) << 8) | (buf[off + 3] & 0xFF);
+  }
+
+  private static void writeInt(byte[] buf, int off, int value) {
+    buf[off] = (byte) (value >>> 24);
+    buf[off + 1] = (byte) (value >>> 16);
+    buf[off + 2] = (byte) (value >>> 8);
+    buf[off + 3] = (byte) value;
+  }
+
+}
@@ -0,0 +1,160 @@
+package site.kason.netlib.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ReadTask;
+import site.kason.netlib.tcp.WriteTask;
+
+/**
+ * Frames messages with a length field holding the length of the payload.
+ * Frames are written by the tasks from {@link #newWriteTask(byte[], int, int)}
+ * and read by the task from {@link #newReadTask(FrameReadTask)},which delivers every complete frame to a {@link FrameReadTask}.
+ * A frame which fits in the read buffer is delivered in place,a larger one is assembled in a buffer from the allocator of the channel.
+ * The codec is stateless and could be shared by channels.
+ *
+ * @author Kason Yang
+ */
+public class LengthFieldFrameCodec {
+
+  public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+  private final int lengthFieldLength;
+
+  private final ByteOrder byteOrder;
+
+  private final int maxFrameLength;
+
+  /**
+   * create a codec with a 4 bytes big endian length field
+   */
+  public LengthFieldFrameCodec() {
+    this(4, ByteOrder.BIG_ENDIAN, DEFAULT_MAX_FRAME_LENGTH);
+  }
+
+  /**
+   * @param lengthFieldLength the length of the length field,which could be 1,2,4 or 8
+   * @param byteOrder the byte order of the length field
+   * @param maxFrameLength the max length of the payload of a frame
+   */
+  public LengthFieldFrameCodec(int lengthFieldLength, ByteOrder byteOrder, int maxFrameLength) {
+    if (lengthFieldLength != 1 && lengthFieldLength != 2 && lengthFieldLength != 4 && lengthFieldLength != 8) {
+      throw new IllegalArgumentException("length field length must be 1,2,4 or 8:" + lengthFieldLength);
+    }
+    if (maxFrameLength < 0) {
+      throw new IllegalArgumentException("non-negative max frame length required.");
+    }
+    this.lengthFieldLength = lengthFieldLength;
+    this.byteOrder = byteOrder;
+    this.maxFrameLength = (int) Math.min(maxFrameLength, maxLengthOfField(lengthFieldLength));
+  }
+
+  public int getLengthFieldLength() {
+    return lengthFieldLength;
+  }
+
+  public ByteOrder getByteOrder() {
+    return byteOrder;
+  }
+
+  public int getMaxFrameLength() {
+    return maxFrameLength;
+  }
+
+  /**
+   * create a task which reads frames until the frame task is finished
+   *
+   * @param task the task which handles the frames
+   * @return the read task
+   */
+  public ReadTask newReadTask(FrameReadTask task) {
+    return new LengthFieldFrameReadTask(this, task);
+  }
+
+  /**
+   * read the next frame of the channel
+   *
+   * @param channel the channel
+   * @return a future completed with the payload of the frame in the event loop of the channel
+   */
+  public CompletableFuture<byte[]> readFrameAsync(Channel channel) {
+    FrameReadFuture future = new FrameReadFuture();
+    future.setFrameReader(newReadTask(future));
+    return channel.readAsync(future);
+  }
+
+  public WriteTask newWriteTask(byte[] payload) {
+    return newWriteTask(payload, 0, payload.length);
+  }
+
+  /**
+   * create a task which writes a frame
+   *
+   * @param payload the payload
+   * @param offset the offset of the payload
+   * @param length the length of the payload
+   * @return the write task
+   * @throws TooLongFrameException if the length exceeds the max frame length
+   */
+  public WriteTask newWriteTask(byte[] payload, int offset, int length) {
+    checkFrameLength(length);
+    ByteBuffer header = ByteBuffer.allocate(lengthFieldLength).order(byteOrder);
+    switch (lengthFieldLength) {
+      case 1:
+        header.put((byte) length);
+        break;
+      case 2:
+        header.putShort((short) length);
+        break;
+      case 4:
+        header.putInt(length);
+        break;
+      default:
+        header.putLong(length);
+    }
+    header.flip();
+    return new FrameWriteTask(header, ByteBuffer.wrap(payload, offset, length));
+  }
+
+  /**
+   * read the length field at the read position of the buffer without moving the position
+   *
+   * @param buffer the buffer having at least {@link #getLengthFieldLength()} readable bytes
+   * @param scratch an array of at least 8 bytes
+   * @return the length of the payload
+   * @throws TooLongFrameException if the length exceeds the max frame length
+   */
+  long readLength(IOBuffer buffer, byte[] scratch) {
+    buffer.peek(scratch, 0, lengthFieldLength);
+    ByteBuffer bb = ByteBuffer.wrap(scratch, 0, lengthFieldLength).order(byteOrder);
+    long length;
+    switch (lengthFieldLength) {
+      case 1:
+        length = bb.get() & 0xFFL;
+        break;
+      case 2:
+        length = bb.getShort() & 0xFFFFL;
+        break;
+      case 4:
+        length = bb.getInt() & 0xFFFFFFFFL;
+        break;
+      default:
+        length = bb.getLong();
+    }
+    checkFrameLength(length);
+    return length;
+  }
+
+  private void checkFrameLength(long length) {
+    if (length < 0 || length > maxFrameLength) {
+      throw new TooLongFrameException("frame length " + length + " exceeds " + maxFrameLength);
+    }
+  }
+
+  private static long maxLengthOfField(int lengthFieldLength) {
+    return lengthFieldLength == 8 ? Long.MAX_VALUE : (1L << (lengthFieldLength * 8)) - 1;
+  }
+
+}
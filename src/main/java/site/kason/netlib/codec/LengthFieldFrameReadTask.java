@@ -0,0 +1,124 @@
+package site.kason.netlib.codec;
+
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ReadTask;
+
+/**
+ * Splits the read data into frames.
+ * A complete frame in the read buffer is delivered in place by narrowing the readable bytes of the buffer.
+ * A frame larger than the read buffer is spilled into a buffer from the allocator of the channel,
+ * which starts at {@link #INITIAL_SPILL_SIZE} bytes and doubles until it holds the frame.
+ *
+ * @author Kason Yang
+ */
+class LengthFieldFrameReadTask implements ReadTask {
+
+  static final int INITIAL_SPILL_SIZE = 64 * 1024;
+
+  private final LengthFieldFrameCodec codec;
+
+  private final FrameReadTask task;
+
+  private final byte[] scratch = new byte[8];
+
+  private IOBuffer spill;
+
+  private int spillFrameLength;
+
+  LengthFieldFrameReadTask(LengthFieldFrameCodec codec, FrameReadTask task) {
+    this.codec = codec;
+    this.task = task;
+  }
+
+  @Override
+  public boolean handleRead(Channel channel, IOBuffer buffer) {
+    int headerLength = codec.getLengthFieldLength();
+    for (;;) {
+      if (spill != null) {
+        if (!fillSpill(channel, buffer)) {
+          return false;
+        }
+        IOBuffer frame = spill;
+        spill = null;
+        try {
+          if (task.handleFrame(channel, frame)) {
+            return true;
+          }
+        } finally {
+          frame.release();
+        }
+        continue;
+      }
+      if (buffer.getReadableSize() < headerLength) {
+        return false;
+      }
+      int frameLength = (int) codec.readLength(buffer, scratch);
+      if (buffer.getReadableSize() - headerLength >= frameLength) {
+        buffer.moveReadPosition(headerLength);
+        if (deliverInPlace(channel, buffer, frameLength)) {
+          return true;
+        }
+        continue;
+      }
+      if (headerLength + frameLength <= buffer.capacity()) {
+        //wait for the rest,the buffer is compacted before read again
+        return false;
+      }
+      buffer.moveReadPosition(headerLength);
+      spillFrameLength = frameLength;
+      spill = allocateSpill(channel, Math.min(frameLength, INITIAL_SPILL_SIZE));
+    }
+  }
+
+  private boolean deliverInPlace(Channel channel, IOBuffer buffer, int frameLength) {
+    int frameEnd = buffer.getReadPosition() + frameLength;
+    int writePosition = buffer.getWritePosition();
+    buffer.setWritePosition(frameEnd);
+    try {
+      return task.handleFrame(channel, buffer);
+    } finally {
+      buffer.setWritePosition(writePosition);
+      buffer.setReadPosition(frameEnd);
+    }
+  }
+
+  /**
+   * move the bytes of the spilled frame from the read buffer
+   *
+   * @return true if the frame is complete
+   */
+  private boolean fillSpill(Channel channel, IOBuffer buffer) {
+    for (;;) {
+      int missing = spillFrameLength - spill.getReadableSize();
+      if (missing == 0) {
+        return true;
+      }
+      if (buffer.getReadableSize() == 0) {
+        return false;
+      }
+      if (spill.getWritableSize() == 0) {
+        IOBuffer grown = allocateSpill(channel, (int) Math.min(spillFrameLength, spill.capacity() * 2L));
+        grown.push(spill);
+        spill.release();
+        spill = grown;
+      }
+      int oldLimit = buffer.getWritePosition();
+      int size = Math.min(missing, buffer.getReadableSize());
+      buffer.setWritePosition(buffer.getReadPosition() + size);
+      try {
+        spill.push(buffer);
+      } finally {
+        buffer.setWritePosition(oldLimit);
+      }
+    }
+  }
+
+  private IOBuffer allocateSpill(Channel channel, int capacity) {
+    IOBuffer b = channel.getBufferAllocator().allocate(capacity);
+    //the pool may round the capacity up,never take bytes beyond the frame
+    b.limit(Math.min(b.capacity(), spillFrameLength));
+    return b;
+  }
+
+}
@@ -0,0 +1,24 @@
+package site.kason.netlib.codec;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class TooLongFrameException extends RuntimeException {
+
+  public TooLongFrameException() {
+  }
+
+  public TooLongFrameException(String message) {
+    super(message);
+  }
+
+  public TooLongFrameException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public TooLongFrameException(Throwable cause) {
+    super(cause);
+  }
+
+}
@@ -0,0 +1,161 @@
+package site.kason.netlib.flow;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ConnectionListener;
+import site.kason.netlib.tcp.Host;
+import site.kason.netlib.tcp.ReadTask;
+
+/**
+ * Publishes the decoded data read from a channel to one subscriber.
+ * A read task is queued only while the subscriber has demand,so the channel pauses reading when the demand is used up,
+ * then the socket receive buffer fills and TCP stops the peer,instead of data piling up in the application.
+ * Every item is a new heap buffer holding the data of one read,which is owned by the subscriber.
+ * All signals are sent in the event loop of the channel,the subscriber is completed when the channel is closed.
+ * Cancelling the subscription doesn't close the channel,the data not delivered is left to later read tasks.
+ *
+ * @author Kason Yang
+ */
+public class ChannelPublisher implements Flow.Publisher<ByteBuffer> {
+
+  private final Channel channel;
+
+  private final Host host;
+
+  private ChannelSubscription subscription;
+
+  private boolean closed;
+
+  public ChannelPublisher(Channel channel) {
+    this.channel = channel;
+    this.host = channel.getHost();
+    channel.addConnectionListener(new ConnectionListener() {
+      @Override
+      public void onChannelConnected(Channel ch) {
+
+      }
+
+      @Override
+      public void onChannelConnectFailed(Channel ch, Exception ex) {
+        closed = true;
+        if (subscription != null) {
+          subscription.terminate(ex);
+        }
+      }
+
+      @Override
+      public void onChannelClosed(Channel ch) {
+        closed = true;
+        if (subscription != null) {
+          subscription.terminate(null);
+        }
+      }
+    });
+  }
+
+  public Channel getChannel() {
+    return channel;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber");
+    }
+    if (!host.inEventLoop()) {
+      host.execute(() -> subscribe(subscriber));
+      return;
+    }
+    if (subscription != null) {
+      ChannelSubscription rejected = new ChannelSubscription(subscriber);
+      subscriber.onSubscribe(rejected);
+      rejected.terminate(new IllegalStateException("the channel has been subscribed"));
+      return;
+    }
+    subscription = new ChannelSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+    if (closed || channel.isClosed()) {
+      subscription.terminate(null);
+    }
+  }
+
+  private class ChannelSubscription implements Flow.Subscription, ReadTask {
+
+    private final Flow.Subscriber<? super ByteBuffer> subscriber;
+
+    private long demand;
+
+    private boolean reading;
+
+    private boolean terminated;
+
+    ChannelSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (!host.inEventLoop()) {
+        host.execute(() -> request(n));
+        return;
+      }
+      if (terminated) {
+        return;
+      }
+      if (n <= 0) {
+        terminate(new IllegalArgumentException("positive request required:" + n));
+        return;
+      }
+      demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+      if (!reading) {
+        reading = true;
+        channel.read(this);
+      }
+    }
+
+    @Override
+    public void cancel() {
+      if (!host.inEventLoop()) {
+        host.execute(this::cancel);
+        return;
+      }
+      terminated = true;
+    }
+
+    @Override
+    public boolean handleRead(Channel ch, IOBuffer buffer) {
+      if (terminated) {
+        reading = false;
+        return true;
+      }
+      byte[] data = new byte[buffer.getReadableSize()];
+      buffer.poll(data);
+      demand--;
+      subscriber.onNext(ByteBuffer.wrap(data));
+      if (terminated || demand == 0) {
+        reading = false;
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * @param ex the failure,or null to complete
+     */
+    void terminate(Exception ex) {
+      if (terminated) {
+        return;
+      }
+      terminated = true;
+      if (ex == null) {
+        subscriber.onComplete();
+      } else {
+        subscriber.onError(ex);
+      }
+    }
+
+  }
+
+}
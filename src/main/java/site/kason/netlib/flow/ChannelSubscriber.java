@@ -0,0 +1,165 @@
+package site.kason.netlib.flow;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ConnectionListener;
+import site.kason.netlib.tcp.GatheringWriteTask;
+
+/**
+ * Writes the buffers of a publisher to a channel.
+ * At most {@code prefetch} buffers are requested ahead,and one more is requested whenever a buffer is written to the socket,
+ * so a peer which doesn't read stops the publisher instead of the buffers piling up in the write queue.
+ * The buffers must not be modified after they are passed to {@link #onNext(ByteBuffer)}.
+ * The channel is closed when the publisher fails,and the subscription is cancelled when the channel is closed.
+ *
+ * @author Kason Yang
+ */
+public class ChannelSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+  public static final int DEFAULT_PREFETCH = 16;
+
+  private final Channel channel;
+
+  private final int prefetch;
+
+  private final boolean closeOnComplete;
+
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+  private volatile Flow.Subscription subscription;
+
+  public ChannelSubscriber(Channel channel) {
+    this(channel, DEFAULT_PREFETCH, false);
+  }
+
+  /**
+   * @param channel the channel to write
+   * @param prefetch the max count of buffers requested but not written yet
+   * @param closeOnComplete whether the channel should be closed after all buffers are written
+   */
+  public ChannelSubscriber(Channel channel, int prefetch, boolean closeOnComplete) {
+    if (prefetch <= 0) {
+      throw new IllegalArgumentException("positive prefetch required.");
+    }
+    this.channel = channel;
+    this.prefetch = prefetch;
+    this.closeOnComplete = closeOnComplete;
+    channel.addConnectionListener(new ConnectionListener() {
+      @Override
+      public void onChannelConnected(Channel ch) {
+
+      }
+
+      @Override
+      public void onChannelConnectFailed(Channel ch, Exception ex) {
+        cancel(ex);
+      }
+
+      @Override
+      public void onChannelClosed(Channel ch) {
+        cancel(new ClosedChannelException());
+      }
+    });
+  }
+
+  public Channel getChannel() {
+    return channel;
+  }
+
+  /**
+   * @return a future completed when the publisher is completed and all buffers are written,
+   * or failed if the publisher fails or the channel is closed before
+   */
+  public CompletableFuture<Void> getCompletion() {
+    return completion;
+  }
+
+  private void cancel(Exception ex) {
+    if (completion.completeExceptionally(ex)) {
+      Flow.Subscription s = subscription;
+      if (s != null) {
+        s.cancel();
+      }
+    }
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null || completion.isDone()) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    subscription.request(prefetch);
+  }
+
+  @Override
+  public void onNext(ByteBuffer item) {
+    if (item == null) {
+      throw new NullPointerException("item");
+    }
+    channel.write(new ItemWriteTask(item));
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    if (completion.completeExceptionally(throwable)) {
+      channel.close();
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    channel.write(new ItemWriteTask(ByteBuffer.allocate(0)) {
+      @Override
+      public void handleWritten(Channel ch) {
+        if (completion.complete(null) && closeOnComplete) {
+          ch.close();
+        }
+      }
+    });
+  }
+
+  private class ItemWriteTask implements GatheringWriteTask {
+
+    private final ByteBuffer data;
+
+    private final int size;
+
+    ItemWriteTask(ByteBuffer data) {
+      this.data = data;
+      this.size = data.remaining();
+    }
+
+    @Override
+    public boolean handleWrite(Channel ch, IOBuffer buffer) {
+      if (data.hasRemaining()) {
+        buffer.push(data);
+      }
+      return !data.hasRemaining();
+    }
+
+    @Override
+    public void handleWritten(Channel ch) {
+      if (!completion.isDone()) {
+        subscription.request(1);
+      }
+    }
+
+    @Override
+    public long getSize() {
+      return size;
+    }
+
+    @Override
+    public ByteBuffer getGatheringBuffer() {
+      return data;
+    }
+
+  }
+
+}
@@ -0,0 +1,70 @@
+package site.kason.netlib.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A buffer backed by a direct {@link ByteBuffer}.Socket reads and writes on it avoid the copy through
+ * the temporary direct buffers of the JDK,but it has no backing array.
+ *
+ * @author Kason Yang
+ */
+public class DirectIOBuffer extends IOBuffer {
+
+  private final ByteBuffer storage;
+
+  public static DirectIOBuffer create(int capacity) {
+    return new DirectIOBuffer(ByteBuffer.allocateDirect(capacity));
+  }
+
+  protected DirectIOBuffer(ByteBuffer storage) {
+    super(storage.capacity());
+    this.storage = storage;
+  }
+
+  @Override
+  public int capacity() {
+    return storage.capacity();
+  }
+
+  @Override
+  public boolean hasArray() {
+    return false;
+  }
+
+  @Override
+  public boolean isDirect() {
+    return true;
+  }
+
+  @Override
+  public byte[] array() {
+    throw new UnsupportedOperationException("direct buffer has no backing array");
+  }
+
+  protected ByteBuffer storage() {
+    return storage;
+  }
+
+  @Override
+  public ByteBuffer nioBuffer(int index, int length) {
+    ByteBuffer view = storage.duplicate();
+    view.limit(index + length).position(index);
+    return view;
+  }
+
+  @Override
+  protected void setBytes(int index, byte[] src, int offset, int length) {
+    nioBuffer(index, length).put(src, offset, length);
+  }
+
+  @Override
+  protected void getBytes(int index, byte[] dest, int offset, int length) {
+    nioBuffer(index, length).get(dest, offset, length);
+  }
+
+  @Override
+  protected void copyBytes(int srcIndex, int destIndex, int length) {
+    nioBuffer(destIndex, length).put(nioBuffer(srcIndex, length));
+  }
+
+}
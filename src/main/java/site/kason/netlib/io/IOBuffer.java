@@ -1,7 +1,8 @@
 package site.kason.netlib.io;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  *
@@ -17,7 +18,14 @@ public class IOBuffer {
 
   private int writeOffset = 0;
 
-  private final List<IOBufferListener> listeners = new LinkedList();
+  private IOBufferListener[] listeners = new IOBufferListener[0];
+
+  private ByteBuffer sharedView;
+
+  private static final AtomicIntegerFieldUpdater<IOBuffer> REF_CNT_UPDATER
+      = AtomicIntegerFieldUpdater.newUpdater(IOBuffer.class, "refCnt");
+
+  private volatile int refCnt = 1;
 
   public static IOBuffer create(int capacity) {
     byte[] bs = new byte[capacity];
@@ -29,13 +37,35 @@ public class IOBuffer {
     if (writableSize < length) {
       throw new BufferOverflowException(length, writableSize);
     }
-    System.arraycopy(data, offset, byteBuffer, writeOffset, length);
+    setBytes(writeOffset, data, offset, length);
     writeOffset += length;
     for (IOBufferListener lst : listeners) {
       lst.pushed(this);
     }
   }
 
+  /**
+   * push data from a nio buffer
+   * @param src the source buffer,its position is moved by the bytes pushed
+   * @return the bytes pushed
+   */
+  public int push(ByteBuffer src) {
+    int size = Math.min(this.getWritableSize(), src.remaining());
+    if (size <= 0) {
+      return 0;
+    }
+    ByteBuffer dest = this.nioBuffer(writeOffset, size);
+    int oldLimit = src.limit();
+    src.limit(src.position() + size);
+    dest.put(src);
+    src.limit(oldLimit);
+    writeOffset += size;
+    for (IOBufferListener lst : listeners) {
+      lst.pushed(this);
+    }
+    return size;
+  }
+
   public void push(byte[] data, int offset, int length) {
     push0(data, offset, length);
   }
@@ -51,7 +81,11 @@ public class IOBuffer {
    */
   public int push(IOBuffer src) {
     int size = Math.min(this.getWritableSize(), src.getReadableSize());
-    this.push(src.array(), src.getReadPosition(), size);
+    if (src.hasArray()) {
+      this.push(src.array(), src.getReadPosition(), size);
+    } else {
+      this.push(src.nioBuffer(src.getReadPosition(), size));
+    }
     src.moveReadPosition(size);
     return size;
   }
@@ -61,7 +95,7 @@ public class IOBuffer {
     if (usedSize < length) {
       throw new BufferUnderflowException(length, usedSize);
     }
-    System.arraycopy(byteBuffer, readOffset, dest, offset, length);
+    getBytes(readOffset, dest, offset, length);
   }
 
   protected void poll0(byte[] dest, int offset, int length) {
@@ -77,8 +111,82 @@ public class IOBuffer {
     poll0(dest, 0, dest.length);
   }
 
+  /**
+   * poll data into a nio buffer
+   * @param dest the destination buffer,its position is moved by the bytes polled
+   * @return the bytes polled
+   */
+  public int poll(ByteBuffer dest) {
+    int size = Math.min(this.getReadableSize(), dest.remaining());
+    if (size <= 0) {
+      return 0;
+    }
+    dest.put(this.nioBuffer(readOffset, size));
+    this.moveReadPosition(size);
+    return size;
+  }
+
+  /**
+   * get a nio view of the bytes between {@code index} and {@code index + length}.
+   * The position of the view is {@code index},changing the view does not change the positions of this buffer.
+   * @param index the start index
+   * @param length the length of the view
+   * @return the view
+   */
+  public ByteBuffer nioBuffer(int index, int length) {
+    return ByteBuffer.wrap(byteBuffer, index, length);
+  }
+
+  /**
+   * get a nio view like {@link #nioBuffer(int, int)},but the same view is repositioned and returned by every call,
+   * so it is only valid until the next call.It saves creating a view on hot paths.
+   * @param index the start index
+   * @param length the length of the view
+   * @return the view
+   */
+  public ByteBuffer sharedNioBuffer(int index, int length) {
+    ByteBuffer view = sharedView;
+    if (view == null) {
+      view = sharedView = nioBuffer(0, capacity());
+    }
+    view.clear();
+    view.limit(index + length);
+    view.position(index);
+    return view;
+  }
+
+  /**
+   * @return a nio view of the readable bytes
+   * @see #nioBuffer(int, int)
+   */
+  public ByteBuffer readableBuffer() {
+    return nioBuffer(readOffset, getReadableSize());
+  }
+
+  /**
+   * @return a nio view of the writable space
+   * @see #nioBuffer(int, int)
+   */
+  public ByteBuffer writableBuffer() {
+    return nioBuffer(writeOffset, getWritableSize());
+  }
+
+  protected void setBytes(int index, byte[] src, int offset, int length) {
+    System.arraycopy(src, offset, byteBuffer, index, length);
+  }
+
+  protected void getBytes(int index, byte[] dest, int offset, int length) {
+    System.arraycopy(byteBuffer, index, dest, offset, length);
+  }
+
+  protected void copyBytes(int srcIndex, int destIndex, int length) {
+    System.arraycopy(byteBuffer, srcIndex, byteBuffer, destIndex, length);
+  }
+
   public void addListener(IOBufferListener listener) {
-    this.listeners.add(listener);
+    IOBufferListener[] ls = Arrays.copyOf(listeners, listeners.length + 1);
+    ls[listeners.length] = listener;
+    this.listeners = ls;
   }
 
   protected IOBuffer(byte[] array, int readOffset, int writeOffset, int limit) {
@@ -88,6 +196,75 @@ public class IOBuffer {
     this.limit = limit;
   }
 
+  /**
+   * create a buffer without backing array,subclasses must override the storage methods
+   * @param capacity the capacity of the buffer
+   */
+  protected IOBuffer(int capacity) {
+    this.byteBuffer = null;
+    this.limit = capacity;
+  }
+
+  public int capacity() {
+    return byteBuffer.length;
+  }
+
+  public boolean hasArray() {
+    return true;
+  }
+
+  public boolean isDirect() {
+    return false;
+  }
+
+  public int refCnt() {
+    return refCnt;
+  }
+
+  /**
+   * increase the reference count by 1
+   * @return this buffer
+   */
+  public IOBuffer retain() {
+    for (;;) {
+      int cnt = refCnt;
+      if (cnt <= 0) {
+        throw new IllegalStateException("buffer has been released");
+      }
+      if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt + 1)) {
+        return this;
+      }
+    }
+  }
+
+  /**
+   * decrease the reference count by 1 and deallocate the buffer if the count reaches 0.
+   * The buffer must not be used after it is deallocated.
+   * @return true if the buffer is deallocated
+   */
+  public boolean release() {
+    for (;;) {
+      int cnt = refCnt;
+      if (cnt <= 0) {
+        throw new IllegalStateException("buffer has been released");
+      }
+      if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt - 1)) {
+        if (cnt == 1) {
+          deallocate();
+          return true;
+        }
+        return false;
+      }
+    }
+  }
+
+  /**
+   * called when the reference count reaches 0
+   */
+  protected void deallocate() {
+
+  }
+
   public int getWritableSize() {
     return limit - writeOffset;
   }
@@ -100,7 +277,7 @@ public class IOBuffer {
     if (readOffset > 0) {
       int dataSize = this.getReadableSize();
       if (dataSize > 0){
-        System.arraycopy(byteBuffer, readOffset, byteBuffer, 0, dataSize);
+        copyBytes(readOffset, 0, dataSize);
       }
       readOffset = 0;
       writeOffset = dataSize;
@@ -108,7 +285,7 @@ public class IOBuffer {
   }
 
   public int limit(int newLimit) {
-    if (newLimit > byteBuffer.length) {
+    if (newLimit > capacity()) {
       throw new IllegalArgumentException("new limit is out of capacity");
     }
     int oldLimit = this.limit;
@@ -116,6 +293,11 @@ public class IOBuffer {
     return oldLimit;
   }
 
+  /**
+   * @return the backing array
+   * @throws UnsupportedOperationException if the buffer has no backing array
+   * @see #hasArray()
+   */
   public byte[] array() {
     return this.byteBuffer;
   }
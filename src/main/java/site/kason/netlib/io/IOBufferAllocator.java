@@ -0,0 +1,27 @@
+package site.kason.netlib.io;
+
+/**
+ * Allocates the buffers used by pipelines and codecs.
+ * A buffer obtained from an allocator should be released by {@link IOBuffer#release()} when it is no longer used.
+ *
+ * @author Kason Yang
+ */
+public interface IOBufferAllocator {
+
+  /**
+   * allocate a buffer
+   *
+   * @param capacity the minimal capacity required
+   * @return a buffer whose capacity is at least {@code capacity}
+   */
+  IOBuffer allocate(int capacity);
+
+  /**
+   * allocate a buffer backed by direct memory
+   *
+   * @param capacity the minimal capacity required
+   * @return a direct buffer whose capacity is at least {@code capacity}
+   */
+  IOBuffer allocateDirect(int capacity);
+
+}
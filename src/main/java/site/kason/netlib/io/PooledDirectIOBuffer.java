@@ -0,0 +1,23 @@
+package site.kason.netlib.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * @author Kason Yang
+ */
+class PooledDirectIOBuffer extends DirectIOBuffer {
+
+  private final SizeClassPool<ByteBuffer> pool;
+
+  PooledDirectIOBuffer(SizeClassPool<ByteBuffer> pool, ByteBuffer storage) {
+    super(storage);
+    this.pool = pool;
+  }
+
+  @Override
+  protected void deallocate() {
+    pool.recycle(storage(), capacity());
+  }
+
+}
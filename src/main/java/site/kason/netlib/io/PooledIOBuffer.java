@@ -0,0 +1,21 @@
+package site.kason.netlib.io;
+
+/**
+ *
+ * @author Kason Yang
+ */
+class PooledIOBuffer extends IOBuffer {
+
+  private final SizeClassPool<byte[]> pool;
+
+  PooledIOBuffer(SizeClassPool<byte[]> pool, byte[] array) {
+    super(array, 0, 0, array.length);
+    this.pool = pool;
+  }
+
+  @Override
+  protected void deallocate() {
+    pool.recycle(array(), array().length);
+  }
+
+}
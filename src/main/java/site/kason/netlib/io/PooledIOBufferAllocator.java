@@ -0,0 +1,43 @@
+package site.kason.netlib.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An allocator which recycles the storage of released buffers.
+ * Capacities are rounded up to size classes,so a buffer may be larger than requested.
+ *
+ * @author Kason Yang
+ */
+public class PooledIOBufferAllocator implements IOBufferAllocator {
+
+  public static final PooledIOBufferAllocator DEFAULT = new PooledIOBufferAllocator();
+
+  private final SizeClassPool<byte[]> heapPool;
+
+  private final SizeClassPool<ByteBuffer> directPool;
+
+  public PooledIOBufferAllocator() {
+    this(Runtime.getRuntime().availableProcessors() * 2, 16, 4 * 1024 * 1024);
+  }
+
+  /**
+   * @param arenaCount the count of arenas shared by threads
+   * @param threadCacheSize the max count of buffers per size class cached by every thread
+   * @param arenaBytesPerClass the max bytes per size class kept by every arena
+   */
+  public PooledIOBufferAllocator(int arenaCount, int threadCacheSize, int arenaBytesPerClass) {
+    heapPool = new SizeClassPool<>(byte[]::new, arenaCount, threadCacheSize, arenaBytesPerClass);
+    directPool = new SizeClassPool<>(ByteBuffer::allocateDirect, arenaCount, threadCacheSize, arenaBytesPerClass);
+  }
+
+  @Override
+  public IOBuffer allocate(int capacity) {
+    return new PooledIOBuffer(heapPool, heapPool.allocate(capacity));
+  }
+
+  @Override
+  public IOBuffer allocateDirect(int capacity) {
+    return new PooledDirectIOBuffer(directPool, directPool.allocate(capacity));
+  }
+
+}
@@ -0,0 +1,178 @@
+package site.kason.netlib.io;
+
+import java.util.ArrayDeque;
+import java.util.function.IntFunction;
+
+/**
+ * A pool of buffer storage grouped by size classes.
+ * Sizes are rounded up to 4 classes per power of two between {@link #MIN_SIZE} and {@link #MAX_SIZE},
+ * larger requests are not pooled.
+ * Every thread keeps a small cache of each class and falls back to shared arenas.
+ *
+ * @author Kason Yang
+ */
+class SizeClassPool<T> {
+
+  static final int MIN_SIZE = 256;
+
+  static final int MAX_SIZE = 65536;
+
+  private static final int MIN_SHIFT = 8;
+
+  static final int CLASS_COUNT = sizeClassIndex(MAX_SIZE) + 1;
+
+  private final IntFunction<T> factory;
+
+  private final Arena[] arenas;
+
+  private final int threadCacheSize;
+
+  private final int arenaBytesPerClass;
+
+  private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+    @Override
+    protected ThreadCache initialValue() {
+      return new ThreadCache(threadCacheSize);
+    }
+  };
+
+  SizeClassPool(IntFunction<T> factory, int arenaCount, int threadCacheSize, int arenaBytesPerClass) {
+    this.factory = factory;
+    this.threadCacheSize = threadCacheSize;
+    this.arenaBytesPerClass = arenaBytesPerClass;
+    this.arenas = new Arena[arenaCount];
+    for (int i = 0; i < arenaCount; i++) {
+      arenas[i] = new Arena();
+    }
+  }
+
+  static int sizeClassIndex(int capacity) {
+    if (capacity <= MIN_SIZE) {
+      return 0;
+    }
+    int shift = 31 - Integer.numberOfLeadingZeros(capacity - 1);
+    int sub = (capacity - 1 - (1 << shift)) >> (shift - 2);
+    return (shift - MIN_SHIFT) * 4 + sub + 1;
+  }
+
+  static int sizeOf(int index) {
+    if (index == 0) {
+      return MIN_SIZE;
+    }
+    int shift = MIN_SHIFT + (index - 1) / 4;
+    int sub = (index - 1) % 4;
+    return (1 << shift) + ((sub + 1) << (shift - 2));
+  }
+
+  /**
+   * @param capacity the minimal size required
+   * @return storage whose size is the size class of {@code capacity},or exactly {@code capacity} if it is too large to pool
+   */
+  T allocate(int capacity) {
+    if (capacity > MAX_SIZE) {
+      return factory.apply(capacity);
+    }
+    int idx = sizeClassIndex(capacity);
+    Object cached = threadCache.get().poll(idx);
+    if (cached == null) {
+      cached = currentArena().poll(idx);
+    }
+    if (cached == null) {
+      return factory.apply(sizeOf(idx));
+    }
+    //only storage created by the factory is recycled
+    @SuppressWarnings("unchecked")
+    T storage = (T) cached;
+    return storage;
+  }
+
+  /**
+   * return the storage to the pool
+   * @param storage the storage allocated by this pool
+   * @param size the size of the storage
+   */
+  void recycle(T storage, int size) {
+    if (size > MAX_SIZE) {
+      return;
+    }
+    int idx = sizeClassIndex(size);
+    if (sizeOf(idx) != size) {
+      return;
+    }
+    if (!threadCache.get().offer(idx, storage)) {
+      currentArena().offer(idx, storage, Math.max(1, arenaBytesPerClass / size));
+    }
+  }
+
+  private Arena currentArena() {
+    long tid = Thread.currentThread().getId();
+    return arenas[(int) (tid % arenas.length)];
+  }
+
+  private static class ThreadCache {
+
+    private final Object[][] stacks = new Object[CLASS_COUNT][];
+
+    private final int[] counts = new int[CLASS_COUNT];
+
+    ThreadCache(int size) {
+      for (int i = 0; i < CLASS_COUNT; i++) {
+        stacks[i] = new Object[size];
+      }
+    }
+
+    Object poll(int idx) {
+      int cnt = counts[idx];
+      if (cnt == 0) {
+        return null;
+      }
+      Object[] stack = stacks[idx];
+      Object obj = stack[--cnt];
+      stack[cnt] = null;
+      counts[idx] = cnt;
+      return obj;
+    }
+
+    boolean offer(int idx, Object obj) {
+      Object[] stack = stacks[idx];
+      int cnt = counts[idx];
+      if (cnt >= stack.length) {
+        return false;
+      }
+      stack[cnt] = obj;
+      counts[idx] = cnt + 1;
+      return true;
+    }
+
+  }
+
+  private static class Arena {
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Object>[] queues = (ArrayDeque<Object>[]) new ArrayDeque<?>[CLASS_COUNT];
+
+    Arena() {
+      for (int i = 0; i < CLASS_COUNT; i++) {
+        queues[i] = new ArrayDeque<>();
+      }
+    }
+
+    Object poll(int idx) {
+      ArrayDeque<Object> q = queues[idx];
+      synchronized (q) {
+        return q.poll();
+      }
+    }
+
+    void offer(int idx, Object obj, int maxCount) {
+      ArrayDeque<Object> q = queues[idx];
+      synchronized (q) {
+        if (q.size() < maxCount) {
+          q.push(obj);
+        }
+      }
+    }
+
+  }
+
+}
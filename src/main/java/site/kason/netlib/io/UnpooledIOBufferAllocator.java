@@ -0,0 +1,22 @@
+package site.kason.netlib.io;
+
+/**
+ * An allocator which creates a new buffer for every allocation.
+ *
+ * @author Kason Yang
+ */
+public class UnpooledIOBufferAllocator implements IOBufferAllocator {
+
+  public static final UnpooledIOBufferAllocator INSTANCE = new UnpooledIOBufferAllocator();
+
+  @Override
+  public IOBuffer allocate(int capacity) {
+    return IOBuffer.create(capacity);
+  }
+
+  @Override
+  public IOBuffer allocateDirect(int capacity) {
+    return DirectIOBuffer.create(capacity);
+  }
+
+}
@@ -0,0 +1,290 @@
+package site.kason.netlib.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import lombok.SneakyThrows;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.Host;
+import site.kason.netlib.tcp.pipeline.Processor;
+
+/**
+ * A metrics listener which aggregates the metrics of one or more hosts.
+ * Counters are striped,so one instance could be shared by the hosts of a {@link site.kason.netlib.tcp.ChannelHostGroup}.
+ *
+ * @author Kason Yang
+ */
+public class ChannelHostMetrics implements MetricsListener, ChannelHostMetricsMXBean {
+
+  private final LongAdder bytesRead = new LongAdder();
+
+  private final LongAdder bytesWritten = new LongAdder();
+
+  private final LongAdder readCalls = new LongAdder();
+
+  private final LongAdder writeCalls = new LongAdder();
+
+  private final LongAdder loopIterations = new LongAdder();
+
+  private final LongAdder readyKeys = new LongAdder();
+
+  private final LongAdder tasksRun = new LongAdder();
+
+  private final LongAdder selectNanos = new LongAdder();
+
+  private final LongAdder processNanos = new LongAdder();
+
+  private volatile int readRequired;
+
+  private volatile int writeRequired;
+
+  private final LatencyHistogram loopLatency = new LatencyHistogram();
+
+  private final LatencyHistogram taskLag = new LatencyHistogram();
+
+  private final LatencyHistogram codecLatency = new LatencyHistogram();
+
+  private final LatencyHistogram handshakeLatency = new LatencyHistogram();
+
+  private final LongAdder resumedHandshakes = new LongAdder();
+
+  private final Map<String, LongAdder> stageBytesIn = new ConcurrentHashMap<>();
+
+  private final Map<String, LongAdder> stageBytesOut = new ConcurrentHashMap<>();
+
+  @Override
+  public void onSelect(Host host, int readyKeys, long selectNanos) {
+    this.readyKeys.add(readyKeys);
+    this.selectNanos.add(selectNanos);
+  }
+
+  @Override
+  public void onLoopIteration(Host host, int tasks, int readRequired, int writeRequired, long processNanos) {
+    loopIterations.increment();
+    tasksRun.add(tasks);
+    this.readRequired = readRequired;
+    this.writeRequired = writeRequired;
+    this.processNanos.add(processNanos);
+    loopLatency.record(processNanos);
+  }
+
+  @Override
+  public void onTaskLag(Host host, long lagNanos) {
+    taskLag.record(lagNanos);
+  }
+
+  @Override
+  public void onSocketRead(Channel channel, int bytes) {
+    readCalls.increment();
+    if (bytes > 0) {
+      bytesRead.add(bytes);
+    }
+  }
+
+  @Override
+  public void onSocketWrite(Channel channel, long bytes) {
+    writeCalls.increment();
+    if (bytes > 0) {
+      bytesWritten.add(bytes);
+    }
+  }
+
+  @Override
+  public void onProcess(Channel channel, Processor processor, int consumed, int produced, long nanos) {
+    String stage = processor.getClass().getSimpleName();
+    stageBytesIn.computeIfAbsent(stage, k -> new LongAdder()).add(consumed);
+    stageBytesOut.computeIfAbsent(stage, k -> new LongAdder()).add(produced);
+    codecLatency.record(nanos);
+  }
+
+  @Override
+  public void onHandshake(Channel channel, long nanos, boolean resumed) {
+    handshakeLatency.record(nanos);
+    if (resumed) {
+      resumedHandshakes.increment();
+    }
+  }
+
+  /**
+   * register this object to the platform MBean server
+   *
+   * @param name the value of the name key of the object name
+   * @return the object name registered
+   */
+  @SneakyThrows
+  public ObjectName registerMBean(String name) {
+    ObjectName objectName = new ObjectName("site.kason.netlib:type=ChannelHostMetrics,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+
+  public LatencyHistogram getLoopLatency() {
+    return loopLatency;
+  }
+
+  public LatencyHistogram getTaskLag() {
+    return taskLag;
+  }
+
+  public LatencyHistogram getCodecLatency() {
+    return codecLatency;
+  }
+
+  public LatencyHistogram getHandshakeLatency() {
+    return handshakeLatency;
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  @Override
+  public long getReadCalls() {
+    return readCalls.sum();
+  }
+
+  @Override
+  public long getWriteCalls() {
+    return writeCalls.sum();
+  }
+
+  @Override
+  public long getLoopIterations() {
+    return loopIterations.sum();
+  }
+
+  @Override
+  public long getReadyKeys() {
+    return readyKeys.sum();
+  }
+
+  @Override
+  public long getTasksRun() {
+    return tasksRun.sum();
+  }
+
+  @Override
+  public int getReadRequired() {
+    return readRequired;
+  }
+
+  @Override
+  public int getWriteRequired() {
+    return writeRequired;
+  }
+
+  @Override
+  public double getLoopBusyRatio() {
+    long busy = processNanos.sum();
+    long total = busy + selectNanos.sum();
+    return total == 0 ? 0 : (double) busy / total;
+  }
+
+  @Override
+  public long getLoopLatencyP50Micros() {
+    return toMicros(loopLatency.getValueAtPercentile(50));
+  }
+
+  @Override
+  public long getLoopLatencyP99Micros() {
+    return toMicros(loopLatency.getValueAtPercentile(99));
+  }
+
+  @Override
+  public long getLoopLatencyMaxMicros() {
+    return toMicros(loopLatency.getMax());
+  }
+
+  @Override
+  public long getTaskLagP99Micros() {
+    return toMicros(taskLag.getValueAtPercentile(99));
+  }
+
+  @Override
+  public long getTaskLagMaxMicros() {
+    return toMicros(taskLag.getMax());
+  }
+
+  @Override
+  public long getCodecLatencyP99Micros() {
+    return toMicros(codecLatency.getValueAtPercentile(99));
+  }
+
+  @Override
+  public long getHandshakeCount() {
+    return handshakeLatency.getCount();
+  }
+
+  @Override
+  public long getResumedHandshakeCount() {
+    return resumedHandshakes.sum();
+  }
+
+  @Override
+  public long getFullHandshakeCount() {
+    return Math.max(0, getHandshakeCount() - getResumedHandshakeCount());
+  }
+
+  @Override
+  public long getHandshakeP50Micros() {
+    return toMicros(handshakeLatency.getValueAtPercentile(50));
+  }
+
+  @Override
+  public long getHandshakeP99Micros() {
+    return toMicros(handshakeLatency.getValueAtPercentile(99));
+  }
+
+  @Override
+  public Map<String, Long> getStageBytesIn() {
+    return snapshot(stageBytesIn);
+  }
+
+  @Override
+  public Map<String, Long> getStageBytesOut() {
+    return snapshot(stageBytesOut);
+  }
+
+  @Override
+  public void reset() {
+    bytesRead.reset();
+    bytesWritten.reset();
+    readCalls.reset();
+    writeCalls.reset();
+    loopIterations.reset();
+    readyKeys.reset();
+    tasksRun.reset();
+    selectNanos.reset();
+    processNanos.reset();
+    loopLatency.reset();
+    taskLag.reset();
+    codecLatency.reset();
+    handshakeLatency.reset();
+    resumedHandshakes.reset();
+    stageBytesIn.clear();
+    stageBytesOut.clear();
+  }
+
+  private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+    Map<String, Long> result = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+      result.put(e.getKey(), e.getValue().sum());
+    }
+    return result;
+  }
+
+  private static long toMicros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+}
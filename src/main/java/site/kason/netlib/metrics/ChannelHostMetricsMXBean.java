@@ -0,0 +1,60 @@
+package site.kason.netlib.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link ChannelHostMetrics}.Latencies are in microseconds.
+ *
+ * @author Kason Yang
+ */
+public interface ChannelHostMetricsMXBean {
+
+  long getBytesRead();
+
+  long getBytesWritten();
+
+  long getReadCalls();
+
+  long getWriteCalls();
+
+  long getLoopIterations();
+
+  long getReadyKeys();
+
+  long getTasksRun();
+
+  int getReadRequired();
+
+  int getWriteRequired();
+
+  double getLoopBusyRatio();
+
+  long getLoopLatencyP50Micros();
+
+  long getLoopLatencyP99Micros();
+
+  long getLoopLatencyMaxMicros();
+
+  long getTaskLagP99Micros();
+
+  long getTaskLagMaxMicros();
+
+  long getCodecLatencyP99Micros();
+
+  long getHandshakeCount();
+
+  long getResumedHandshakeCount();
+
+  long getFullHandshakeCount();
+
+  long getHandshakeP50Micros();
+
+  long getHandshakeP99Micros();
+
+  Map<String, Long> getStageBytesIn();
+
+  Map<String, Long> getStageBytesOut();
+
+  void reset();
+
+}
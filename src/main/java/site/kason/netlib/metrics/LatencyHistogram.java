@@ -0,0 +1,119 @@
+package site.kason.netlib.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with logarithmic buckets,each power of two is split into 8 linear sub buckets,
+ * so the recorded values are kept with a relative error below 12.5%.
+ * Recording is lock-free and does not allocate.
+ *
+ * @author Kason Yang
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder sum = new LongAdder();
+
+  private final AtomicLong max = new AtomicLong();
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exp = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+    return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+  }
+
+  static long lowerBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int exp = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+    int sub = index % SUB_BUCKET_COUNT;
+    return (1L << exp) + ((long) sub << (exp - SUB_BUCKET_BITS));
+  }
+
+  /**
+   * record a value,negative values are recorded as 0
+   *
+   * @param value the value
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketIndex(value));
+    count.increment();
+    sum.add(value);
+    long m;
+    while (value > (m = max.get())) {
+      if (max.compareAndSet(m, value)) {
+        break;
+      }
+    }
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long c = count.sum();
+    return c == 0 ? 0 : (double) sum.sum() / c;
+  }
+
+  /**
+   * @param percentile the percentile,between 0 and 100
+   * @return the upper bound of the bucket which contains the value at the percentile,or 0 if nothing recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long[] snapshot = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += snapshot[i];
+      if (seen >= target) {
+        long upper = i + 1 < BUCKET_COUNT ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+        return Math.min(upper, max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * clear the recorded values.Values recorded concurrently may be lost or partially kept.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+}
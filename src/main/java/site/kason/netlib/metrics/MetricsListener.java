@@ -0,0 +1,93 @@
+package site.kason.netlib.metrics;
+
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.Host;
+import site.kason.netlib.tcp.pipeline.Processor;
+
+/**
+ * Receives the metrics of hosts and channels.All methods are called in the event loop of the host,
+ * so implementations must be cheap and must not block.
+ * A host only measures time when its listener is not {@link #NOOP}.
+ *
+ * @author Kason Yang
+ */
+public interface MetricsListener {
+
+  /**
+   * the default listener,which disables metrics
+   */
+  MetricsListener NOOP = new MetricsListener() {
+  };
+
+  /**
+   * called after the selector returned
+   *
+   * @param host the host
+   * @param readyKeys the number of keys selected
+   * @param selectNanos the time blocked in the selector
+   */
+  default void onSelect(Host host, int readyKeys, long selectNanos) {
+  }
+
+  /**
+   * called after the events selected are handled
+   *
+   * @param host the host
+   * @param tasks the number of queued tasks run
+   * @param readRequired the number of channels read without waiting for the selector
+   * @param writeRequired the number of channels written without waiting for the selector
+   * @param processNanos the time spent on tasks and channel events
+   */
+  default void onLoopIteration(Host host, int tasks, int readRequired, int writeRequired, long processNanos) {
+  }
+
+  /**
+   * called before a queued task runs
+   *
+   * @param host the host
+   * @param lagNanos the time between queuing and running the task
+   */
+  default void onTaskLag(Host host, long lagNanos) {
+  }
+
+  /**
+   * called after every read from the socket
+   *
+   * @param channel the channel
+   * @param bytes the bytes read,may be 0
+   */
+  default void onSocketRead(Channel channel, int bytes) {
+  }
+
+  /**
+   * called after every write to the socket
+   *
+   * @param channel the channel
+   * @param bytes the bytes written,may be 0
+   */
+  default void onSocketWrite(Channel channel, long bytes) {
+  }
+
+  /**
+   * called after a processor of the channel consumed or produced data
+   *
+   * @param channel the channel
+   * @param processor the processor
+   * @param consumed the bytes consumed
+   * @param produced the bytes produced
+   * @param nanos the time spent in the processor
+   */
+  default void onProcess(Channel channel, Processor processor, int consumed, int produced, long nanos) {
+  }
+
+  /**
+   * called when a handshake of the channel is finished
+   *
+   * @param channel the channel
+   * @param nanos the time from the start to the end of the handshake
+   * @param resumed true if a cached session is resumed instead of a full handshake
+   */
+  default void onHandshake(Channel channel, long nanos, boolean resumed) {
+  }
+
+}
@@ -10,27 +10,106 @@ import site.kason.netlib.tcp.pipeline.Processor;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.Executor;
 
 /**
+ * A codec encrypting channels by a {@link SSLEngine}.
+ * The engine is created with the remote host and port of the channel unless {@link #setPeer(String, int)} is called,
+ * so client sessions are cached by the context and resumed when connecting the same peer again.
+ * The cache is tuned by {@link SSLContextUtil#setSessionCache(SSLContext, int, int)}.
+ *
  * @author Kason Yang
  */
 public class SSLCodec implements Codec {
 
   private final SSLContext context;
   private final boolean isClientMode;
+  private final Executor delegatedTaskExecutor;
+  private String peerHost;
+  private int peerPort = -1;
+  private String[] enabledProtocols;
   private SSLEncodeProcessor encoder;
   private SSLDecodeProcessor decoder;
+  private SSLSession session;
 
   public SSLCodec(SSLContext context, boolean isClientMode) {
+    this(context, isClientMode, null);
+  }
+
+  /**
+   * @param context the ssl context
+   * @param isClientMode true if the channel is the client side
+   * @param delegatedTaskExecutor the executor of the delegated tasks of the handshake and later renegotiations,such as key exchange computations.
+   *                              If null,the tasks run in the event loop and block the other channels of the host.
+   *                              A bounded pool shared by codecs is recommended,the tasks rejected by it run in the event loop.
+   */
+  public SSLCodec(SSLContext context, boolean isClientMode, Executor delegatedTaskExecutor) {
     this.context = context;
     this.isClientMode = isClientMode;
+    this.delegatedTaskExecutor = delegatedTaskExecutor;
+  }
+
+  /**
+   * set the peer used to cache and look up sessions instead of the remote address of the channel.
+   * The remote address is only known if the codec is added after {@link Channel#connect(SocketAddress)} is called,
+   * so a client codec added before connecting must have its peer set,or its sessions are neither cached nor resumed.
+   *
+   * @param host the host name of the peer,which is also used to verify the identity of a server if enabled by the context
+   * @param port the port of the peer
+   */
+  public void setPeer(String host, int port) {
+    this.peerHost = host;
+    this.peerPort = port;
+  }
+
+  /**
+   * set the protocols enabled on the engine,such as {@link SSLContextUtil#TLS_1_2} and {@link SSLContextUtil#TLS_1_3}.
+   * The protocols enabled by the context are used if not set.
+   *
+   * @param protocols the protocols
+   */
+  public void setEnabledProtocols(String... protocols) {
+    this.enabledProtocols = protocols.clone();
+  }
+
+  /**
+   * @return true if the handshake resumed a cached session,only valid after the codec is initialized
+   */
+  public boolean isSessionResumed() {
+    return session != null && session.isResumed();
+  }
+
+  private SSLEngine createSSLEngine(Channel channel) {
+    String host = peerHost;
+    int port = peerPort;
+    if (host == null) {
+      SocketAddress remote = null;
+      try {
+        remote = channel.socketChannel().getRemoteAddress();
+      } catch (IOException ex) {
+        //create the engine without peer
+      }
+      if (remote instanceof InetSocketAddress) {
+        InetSocketAddress isa = (InetSocketAddress) remote;
+        host = isa.getHostString();
+        port = isa.getPort();
+      }
+    }
+    SSLEngine sslEngine = host == null ? context.createSSLEngine() : context.createSSLEngine(host, port);
+    if (enabledProtocols != null) {
+      sslEngine.setEnabledProtocols(enabledProtocols);
+    }
+    return sslEngine;
   }
 
   @Override
   public void init(Channel channel, CodecInitProgress progress) {
-    SSLEngine sslEngine = context.createSSLEngine();
+    SSLEngine sslEngine = createSSLEngine(channel);
     sslEngine.setUseClientMode(isClientMode);
-    final SSLSession session = new SSLSession(channel, sslEngine, progress);
+    final SSLSession session = this.session = new SSLSession(channel, sslEngine, progress, delegatedTaskExecutor);
     channel.read(new ReadTask() {
       @Override
       public boolean handleRead(Channel channel, IOBuffer buffer) {
@@ -59,4 +138,11 @@ public class SSLCodec implements Codec {
     return decoder;
   }
 
+  @Override
+  public void release() {
+    if (session != null) {
+      session.release();
+    }
+  }
+
 }
@@ -15,6 +15,7 @@ import java.security.cert.CertificateException;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 
@@ -26,7 +27,8 @@ public class SSLContextUtil {
           TLS = "TLS",
           TLS_1 = "TLSv1",
           TLS_1_1 = "TLSv1.1",
-          TLS_1_2 = "TLSv1.2";
+          TLS_1_2 = "TLSv1.2",
+          TLS_1_3 = "TLSv1.3";
 
   public static SSLContext createFromKeyStore(File file, String pwd) throws KeyManagementException, IOException, KeyStoreException, NoSuchAlgorithmException, CertificateException, UnrecoverableKeyException {
     return SSLContextUtil.createFromKeyStore(file, pwd, TLS_1);
@@ -59,6 +61,22 @@ public class SSLContextUtil {
     return sslCtx;
   }
 
+  /**
+   * tune the client and server session caches of the context,which sessions are resumed from
+   *
+   * @param context the context
+   * @param size the max count of cached sessions,0 for no limit
+   * @param timeoutSeconds the seconds a session is cached,0 for no limit
+   */
+  public static void setSessionCache(SSLContext context, int size, int timeoutSeconds) {
+    for (SSLSessionContext sc : new SSLSessionContext[]{context.getClientSessionContext(), context.getServerSessionContext()}) {
+      if (sc != null) {
+        sc.setSessionCacheSize(size);
+        sc.setSessionTimeout(timeoutSeconds);
+      }
+    }
+  }
+
   private static KeyManagerFactory createKeyManager(KeyStore ks, String pwd) throws UnrecoverableKeyException, KeyStoreException, NoSuchAlgorithmException {
     KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
     kmf.init(ks, pwd.toCharArray());
@@ -1,8 +1,8 @@
 package site.kason.netlib.ssl;
 
 import lombok.SneakyThrows;
-import site.kason.netlib.io.BufferUnderflowException;
 import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.metrics.MetricsListener;
 import site.kason.netlib.tcp.Channel;
 import site.kason.netlib.tcp.pipeline.CodecInitProgress;
 
@@ -12,6 +12,10 @@ import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  *
@@ -35,15 +39,57 @@ public class SSLSession {
 
   private final CodecInitProgress progress;
 
+  private boolean released = false;
+
+  private final long handshakeStartTime;
+
+  /**
+   * the wall clock time when the handshake started,a resumed session was created before it
+   */
+  private final long handshakeStartMillis = System.currentTimeMillis();
+
+  private boolean resumed;
+
+  private int applicationBufferSize;
+
+  private int packetBufferSize;
+
+  /**
+   * set when the engine requires a wrap outside of the handshake,such as a key update of TLS 1.3
+   */
+  private boolean wrapPending = false;
+
+  /**
+   * the bytes received along with the last handshake messages,they are decrypted before the input of the decoder
+   */
+  private IOBuffer handshakeRemaining;
+
+  private final Executor delegatedTaskExecutor;
+
+  /**
+   * true while the delegated tasks run in the executor,the engine must not be touched until they finish
+   */
+  private boolean delegatedTaskRunning = false;
+
   public SSLSession(Channel channel, SSLEngine sslEngine, CodecInitProgress progress) {
+    this(channel, sslEngine, progress, null);
+  }
+
+  /**
+   * @param channel the channel
+   * @param sslEngine the engine
+   * @param progress the progress of the codec initialization
+   * @param delegatedTaskExecutor the executor of the delegated tasks,or null to run them in the event loop
+   */
+  public SSLSession(Channel channel, SSLEngine sslEngine, CodecInitProgress progress, Executor delegatedTaskExecutor) {
     this.channel = channel;
+    this.delegatedTaskExecutor = delegatedTaskExecutor;
     this.sslEngine = sslEngine;
-    javax.net.ssl.SSLSession sess = sslEngine.getSession();
-    int maxPacketSize = sess.getPacketBufferSize();
-    this.handshakeReadBuffer = IOBuffer.create(maxPacketSize);
-    this.handshakeWriteBuffer = IOBuffer.create(maxPacketSize);
+    updateBufferSizes();
+    this.handshakeReadBuffer = channel.getBufferAllocator().allocate(packetBufferSize);
+    this.handshakeWriteBuffer = channel.getBufferAllocator().allocate(packetBufferSize);
     this.progress = progress;
-
+    this.handshakeStartTime = channel.getMetricsListener() == MetricsListener.NOOP ? 0 : System.nanoTime();
   }
 
   public Channel getChannel() {
@@ -54,10 +100,29 @@ public class SSLSession {
     return this.handshaked;
   }
 
+  /**
+   * @return true if the handshake resumed a cached session instead of a full handshake,
+   * only valid after the handshake is finished
+   */
+  public boolean isResumed() {
+    return this.resumed;
+  }
+
   public void handleRead(IOBuffer in, IOBuffer out) throws SSLException, IOException {
     if (!this.isHandshaked()) {
       throw new IllegalStateException();
     }
+    IOBuffer remaining = this.handshakeRemaining;
+    if (remaining != null) {
+      remaining.compact();
+      remaining.push(in);
+      this.decrypt(remaining, out);
+      if (remaining.getReadableSize() > 0) {
+        return;
+      }
+      this.handshakeRemaining = null;
+      remaining.release();
+    }
     this.decrypt(in, out);
   }
 
@@ -77,6 +142,9 @@ public class SSLSession {
     channel.pauseRead();
     this.handshakeReadBuffer.compact();
     this.handshakeReadBuffer.push(in);
+    if (delegatedTaskRunning) {
+      return;
+    }
     if (this.finishHandshakePending) {
       this.finishHandshake();
     } else {
@@ -92,6 +160,9 @@ public class SSLSession {
     //System.out.println("handling wrap:" + channel);
     this.handshakeWriteBuffer.compact();
     out.push(this.handshakeWriteBuffer);
+    if (delegatedTaskRunning) {
+      return;
+    }
     if (this.finishHandshakePending) {
       if (out.getReadableSize() > 0) {
         channel.continueWrite();
@@ -105,9 +176,12 @@ public class SSLSession {
 
   @SneakyThrows
   private void prepareNextOperationOfHandshake(HandshakeStatus hs) {
-    ByteBuffer readBuffer = ByteBuffer.wrap(handshakeReadBuffer.array(), handshakeReadBuffer.getReadPosition(), handshakeReadBuffer.getReadableSize());
-    ByteBuffer writeBuffer = ByteBuffer.wrap(handshakeWriteBuffer.array(), handshakeWriteBuffer.getWritePosition(), handshakeWriteBuffer.getWritableSize());
+    ByteBuffer readBuffer = handshakeReadBuffer.sharedNioBuffer(handshakeReadBuffer.getReadPosition(), handshakeReadBuffer.getReadableSize());
+    ByteBuffer writeBuffer = handshakeWriteBuffer.sharedNioBuffer(handshakeWriteBuffer.getWritePosition(), handshakeWriteBuffer.getWritableSize());
     if (hs == HandshakeStatus.NEED_TASK) {
+      if (delegatedTaskExecutor != null && runDelegatedTasksAsync(this::resumeHandshake)) {
+        return;
+      }
       Runnable runnable;
       while ((runnable = sslEngine.getDelegatedTask()) != null) {
         runnable.run();
@@ -133,6 +207,70 @@ public class SSLSession {
     }
   }
 
+  /**
+   * run the delegated tasks in the executor and resume in the event loop of the channel.
+   * The tasks run in the event loop if the executor rejects them.
+   *
+   * @param resume the operation resumed in the event loop after the tasks are finished
+   * @return true if the tasks run in the executor,or false if they have run in the event loop
+   */
+  private boolean runDelegatedTasksAsync(Runnable resume) {
+    List<Runnable> tasks = new ArrayList<>();
+    Runnable runnable;
+    while ((runnable = sslEngine.getDelegatedTask()) != null) {
+      tasks.add(runnable);
+    }
+    try {
+      delegatedTaskExecutor.execute(() -> {
+        Throwable failure = null;
+        try {
+          for (Runnable t : tasks) {
+            t.run();
+          }
+        } catch (Throwable ex) {
+          failure = ex;
+        }
+        Throwable taskFailure = failure;
+        channel.getHost().execute(channel, () -> resumeAfterDelegatedTasks(taskFailure, resume));
+      });
+    } catch (RejectedExecutionException ex) {
+      for (Runnable t : tasks) {
+        t.run();
+      }
+      return false;
+    }
+    //resumed by a task queued to the event loop,so it can't be resumed before this
+    delegatedTaskRunning = true;
+    return true;
+  }
+
+  @SneakyThrows
+  private void resumeAfterDelegatedTasks(Throwable taskFailure, Runnable resume) {
+    delegatedTaskRunning = false;
+    if (channel.isClosed()) {
+      return;
+    }
+    if (taskFailure != null) {
+      throw taskFailure;
+    }
+    resume.run();
+  }
+
+  private void resumeHandshake() {
+    if (!released) {
+      this.prepareNextOperationOfHandshake(sslEngine.getHandshakeStatus());
+    }
+  }
+
+  /**
+   * continue the records left by the post-handshake tasks
+   */
+  private void resumePostHandshake() {
+    handlePostHandshakeStatus(sslEngine.getHandshakeStatus());
+    channel.continueWrite();
+    channel.continueDecode();
+  }
+
   private void handleResult(SSLEngineResult result) {
     int byteConsumed = result.bytesConsumed();
     int byteProduced = result.bytesProduced();
@@ -155,41 +293,134 @@ public class SSLSession {
     }
   }
 
-  private void encrypt(IOBuffer source, IOBuffer dest) throws SSLException, BufferUnderflowException {
-    ByteBuffer srcBf = ByteBuffer.wrap(source.array(), source.getReadPosition(), source.getReadableSize());
-    ByteBuffer outBf = ByteBuffer.wrap(dest.array(), dest.getWritePosition(), dest.getWritableSize());
-    SSLEngineResult res = sslEngine.wrap(srcBf, outBf);
-    int byteConsumed = res.bytesConsumed();
-    int byteProduced = res.bytesProduced();
-    source.moveReadPosition(byteConsumed);
-    dest.setWritePosition(dest.getWritePosition() + byteProduced);
+  /**
+   * wrap records until the source is exhausted or the destination is full
+   */
+  private void encrypt(IOBuffer source, IOBuffer dest) throws SSLException {
+    while (!delegatedTaskRunning && (source.getReadableSize() > 0 || wrapPending)) {
+      wrapPending = false;
+      ByteBuffer srcBf = source.sharedNioBuffer(source.getReadPosition(), source.getReadableSize());
+      ByteBuffer outBf = dest.sharedNioBuffer(dest.getWritePosition(), dest.getWritableSize());
+      SSLEngineResult res = sslEngine.wrap(srcBf, outBf);
+      int byteConsumed = res.bytesConsumed();
+      int byteProduced = res.bytesProduced();
+      source.moveReadPosition(byteConsumed);
+      dest.moveWritePosition(byteProduced);
+      SSLEngineResult.Status status = res.getStatus();
+      if (status == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+        //wait for the destination to be drained
+        updateBufferSizes();
+        wrapPending = res.getHandshakeStatus() == HandshakeStatus.NEED_WRAP;
+        return;
+      } else if (status == SSLEngineResult.Status.CLOSED) {
+        return;
+      }
+      handlePostHandshakeStatus(res.getHandshakeStatus());
+      if (byteConsumed == 0 && byteProduced == 0) {
+        return;
+      }
+    }
   }
 
+  /**
+   * unwrap records until the source is exhausted,the rest is a partial record,or the destination is full
+   */
   private void decrypt(IOBuffer source, IOBuffer dest) throws SSLException {
-    ByteBuffer srcBf = ByteBuffer.wrap(source.array(), source.getReadPosition(), source.getReadableSize());
-    ByteBuffer outBf = ByteBuffer.wrap(dest.array(), dest.getWritePosition(), dest.getWritableSize());
-    SSLEngineResult res = sslEngine.unwrap(srcBf, outBf);
-    int byteConsumed = res.bytesConsumed();
-    int byteProduced = res.bytesProduced();
-    source.moveReadPosition(byteConsumed);
-    dest.setWritePosition(dest.getWritePosition() + byteProduced);
+    while (!delegatedTaskRunning && source.getReadableSize() > 0) {
+      ByteBuffer srcBf = source.sharedNioBuffer(source.getReadPosition(), source.getReadableSize());
+      ByteBuffer outBf = dest.sharedNioBuffer(dest.getWritePosition(), dest.getWritableSize());
+      SSLEngineResult res = sslEngine.unwrap(srcBf, outBf);
+      int byteConsumed = res.bytesConsumed();
+      int byteProduced = res.bytesProduced();
+      source.moveReadPosition(byteConsumed);
+      dest.moveWritePosition(byteProduced);
+      SSLEngineResult.Status status = res.getStatus();
+      if (status == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+        //wait for the rest of the record
+        return;
+      } else if (status == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+        //wait for the destination to be drained
+        updateBufferSizes();
+        return;
+      } else if (status == SSLEngineResult.Status.CLOSED) {
+        return;
+      }
+      handlePostHandshakeStatus(res.getHandshakeStatus());
+      if (byteConsumed == 0 && byteProduced == 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * handle the handshake messages after the handshake,such as session tickets,key updates and renegotiations.
+   * The engine is not used until the delegated tasks run in the executor are finished.
+   */
+  private void handlePostHandshakeStatus(HandshakeStatus hs) {
+    if (hs == HandshakeStatus.NEED_TASK) {
+      if (delegatedTaskExecutor != null && runDelegatedTasksAsync(this::resumePostHandshake)) {
+        return;
+      }
+      Runnable runnable;
+      while ((runnable = sslEngine.getDelegatedTask()) != null) {
+        runnable.run();
+      }
+      hs = sslEngine.getHandshakeStatus();
+    }
+    if (hs == HandshakeStatus.NEED_WRAP && !wrapPending) {
+      wrapPending = true;
+      channel.continueWrite();
+    }
+  }
+
+  private void updateBufferSizes() {
+    javax.net.ssl.SSLSession sess = sslEngine.getSession();
+    this.applicationBufferSize = sess.getApplicationBufferSize();
+    this.packetBufferSize = sess.getPacketBufferSize();
   }
 
   private void finishHandshake() {
     this.handshaked = true;
     this.handshaking = false;
+    updateBufferSizes();
+    //both TLS 1.2 session ids and TLS 1.3 tickets restore a session created by an earlier handshake
+    this.resumed = sslEngine.getSession().getCreationTime() < handshakeStartMillis;
+    MetricsListener metricsListener = channel.getMetricsListener();
+    if (metricsListener != MetricsListener.NOOP) {
+      metricsListener.onHandshake(channel, System.nanoTime() - handshakeStartTime, resumed);
+    }
     channel.continueRead();
     channel.continueWrite();
+    //the handshake buffers are useless once handshaked,except the application data read along with the handshake
+    IOBuffer remaining = handshakeReadBuffer.getReadableSize() > 0 ? handshakeReadBuffer.retain() : null;
+    this.release();
+    this.handshakeRemaining = remaining;
     progress.done();
     //System.out.println("handshake finished.");
   }
 
+  /**
+   * release the buffers used for handshaking
+   */
+  public void release() {
+    if (handshakeRemaining != null) {
+      handshakeRemaining.release();
+      handshakeRemaining = null;
+    }
+    if (released) {
+      return;
+    }
+    released = true;
+    handshakeReadBuffer.release();
+    handshakeWriteBuffer.release();
+  }
+
   public int getApplicationBufferSize() {
-    return this.sslEngine.getSession().getApplicationBufferSize();
+    return this.applicationBufferSize;
   }
 
   public int getPacketBufferSize() {
-    return this.sslEngine.getSession().getPacketBufferSize();
+    return this.packetBufferSize;
   }
 
 }
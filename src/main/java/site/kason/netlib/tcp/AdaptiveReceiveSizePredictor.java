@@ -0,0 +1,87 @@
+package site.kason.netlib.tcp;
+
+/**
+ * Predicts the size of the next socket read from the previous reads.
+ * The size is a power of two between the min and max size,it doubles when a read fills the buffer,
+ * and halves after {@link #SHRINK_THRESHOLD} consecutive reads fitting in half of it.
+ * A channel has its own predictor,which is only used in its event loop.
+ *
+ * @author Kason Yang
+ */
+public class AdaptiveReceiveSizePredictor {
+
+  public static final int DEFAULT_MIN_SIZE = 1024;
+
+  public static final int DEFAULT_INITIAL_SIZE = 4096;
+
+  public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+  static final int SHRINK_THRESHOLD = 8;
+
+  private final int minSize;
+
+  private final int maxSize;
+
+  private int nextSize;
+
+  private int smallReads;
+
+  public AdaptiveReceiveSizePredictor() {
+    this(DEFAULT_MIN_SIZE, DEFAULT_INITIAL_SIZE, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param minSize the min size,which is rounded up to a power of two
+   * @param initialSize the initial size,which is rounded up to a power of two
+   * @param maxSize the max size,which is rounded up to a power of two
+   */
+  public AdaptiveReceiveSizePredictor(int minSize, int initialSize, int maxSize) {
+    if (minSize <= 0 || initialSize < minSize || maxSize < initialSize) {
+      throw new IllegalArgumentException("0 < min size <= initial size <= max size required.");
+    }
+    this.minSize = roundUp(minSize);
+    this.maxSize = roundUp(maxSize);
+    this.nextSize = roundUp(initialSize);
+  }
+
+  public int getMinSize() {
+    return minSize;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return the size of the buffer for the next read
+   */
+  public int nextSize() {
+    return nextSize;
+  }
+
+  /**
+   * record a read
+   *
+   * @param bytesRead the bytes read
+   * @param attempted the writable bytes of the buffer before the read
+   */
+  public void record(int bytesRead, int attempted) {
+    if (bytesRead >= attempted && bytesRead > 0) {
+      smallReads = 0;
+      nextSize = Math.min(maxSize, nextSize << 1);
+    } else if (bytesRead <= nextSize >> 1 && nextSize > minSize) {
+      if (++smallReads >= SHRINK_THRESHOLD) {
+        smallReads = 0;
+        nextSize >>= 1;
+      }
+    } else {
+      smallReads = 0;
+    }
+  }
+
+  private static int roundUp(int size) {
+    int n = Integer.highestOneBit(size);
+    return n == size ? n : n << 1;
+  }
+
+}
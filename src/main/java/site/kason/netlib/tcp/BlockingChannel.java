@@ -0,0 +1,343 @@
+package site.kason.netlib.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.tasks.ByteWriteTask;
+
+/**
+ * Blocking streams over a channel,for business code running in its own threads,such as virtual threads.
+ * The channel stays in its event loop:a read queues a read task only when no data is buffered,
+ * so reading is paused while the reader is busy,and a write waits while the channel is saturated.
+ * The callers park on {@link ReentrantLock} conditions,which do not pin virtual threads to their carriers.
+ * The streams must not be used in the event loop of the channel.
+ *
+ * @author Kason Yang
+ */
+public class BlockingChannel {
+
+  public static final int DEFAULT_INPUT_BUFFER_SIZE = 8192;
+
+  private final Channel channel;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition readable = lock.newCondition();
+
+  private final Condition writable = lock.newCondition();
+
+  private final IOBuffer inputBuffer;
+
+  private boolean readPending;
+
+  /**
+   * the count of writers waiting for the channel to drain
+   */
+  private volatile int writeWaiters;
+
+  private boolean closed;
+
+  private Exception failure;
+
+  private long readTimeoutNanos;
+
+  private final InputStream inputStream = new ChannelInputStream();
+
+  private final OutputStream outputStream = new ChannelOutputStream();
+
+  private final ReadTask fillTask = this::fill;
+
+  public BlockingChannel(Channel channel) {
+    this(channel, DEFAULT_INPUT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param channel the channel
+   * @param inputBufferSize the max bytes taken from the channel by a read
+   */
+  public BlockingChannel(Channel channel, int inputBufferSize) {
+    this.channel = channel;
+    this.inputBuffer = IOBuffer.create(inputBufferSize);
+    channel.addConnectionListener(new ConnectionListener() {
+      @Override
+      public void onChannelConnected(Channel ch) {
+
+      }
+
+      @Override
+      public void onChannelConnectFailed(Channel ch, Exception ex) {
+        fail(ex);
+      }
+
+      @Override
+      public void onChannelClosed(Channel ch) {
+        fail(null);
+      }
+    });
+    if (channel.isClosed()) {
+      closed = true;
+    }
+  }
+
+  public Channel getChannel() {
+    return channel;
+  }
+
+  public InputStream getInputStream() {
+    return inputStream;
+  }
+
+  public OutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  public long getReadTimeout(TimeUnit unit) {
+    return unit.convert(readTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * set the max time a read waits for data,a {@link SocketTimeoutException} is thrown if exceeded
+   *
+   * @param timeout the timeout,0 to wait forever
+   * @param unit the unit of the timeout
+   */
+  public void setReadTimeout(long timeout, TimeUnit unit) {
+    this.readTimeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * close the channel,the parked callers are woken up
+   */
+  public void close() {
+    channel.close();
+  }
+
+  private boolean fill(Channel ch, IOBuffer buffer) {
+    lock.lock();
+    try {
+      inputBuffer.compact();
+      inputBuffer.push(buffer);
+      readPending = false;
+      readable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    return true;
+  }
+
+  private void fail(Exception ex) {
+    lock.lock();
+    try {
+      closed = true;
+      if (failure == null) {
+        failure = ex;
+      }
+      readable.signalAll();
+      writable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * wake the waiting writers when a write task is written,the watermark listeners are not used
+   * since a saturation and a drain before the listeners are called cancel each other
+   */
+  private void handleWritten() {
+    if (writeWaiters == 0) {
+      return;
+    }
+    lock.lock();
+    try {
+      writable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException(failure);
+    }
+  }
+
+  /**
+   * @return the nanos left,or a negative value if the deadline has passed
+   */
+  private long await(Condition condition, long nanos) throws IOException {
+    if (channel.getHost().inEventLoop()) {
+      throw new IllegalStateException("blocking in the event loop of the channel");
+    }
+    try {
+      if (nanos > 0) {
+        return condition.awaitNanos(nanos);
+      }
+      condition.await();
+      return 0;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    lock.lock();
+    try {
+      long timeout = readTimeoutNanos;
+      while (inputBuffer.getReadableSize() == 0) {
+        if (closed) {
+          checkFailure();
+          return -1;
+        }
+        if (!readPending) {
+          readPending = true;
+          channel.read(fillTask);
+        }
+        long left = await(readable, timeout);
+        if (timeout > 0) {
+          if (left <= 0 && inputBuffer.getReadableSize() == 0) {
+            throw new SocketTimeoutException("read timed out");
+          }
+          timeout = left;
+        }
+      }
+      int size = Math.min(len, inputBuffer.getReadableSize());
+      inputBuffer.poll(b, off, size);
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void write(byte[] b, int off, int len) throws IOException {
+    lock.lock();
+    try {
+      //counted before checking,so a task written after the check sees the waiter
+      writeWaiters++;
+      try {
+        while (!closed && channel.isWriteSaturated()) {
+          await(writable, 0);
+        }
+      } finally {
+        writeWaiters--;
+      }
+      if (closed) {
+        checkFailure();
+        throw new ClosedChannelException();
+      }
+    } finally {
+      lock.unlock();
+    }
+    channel.write(new ByteWriteTask(Arrays.copyOfRange(b, off, off + len)) {
+      @Override
+      public void handleWritten(Channel ch) {
+        BlockingChannel.this.handleWritten();
+      }
+    });
+  }
+
+  private void flush() throws IOException {
+    boolean[] written = new boolean[1];
+    channel.write(new ByteWriteTask(new byte[0]) {
+      @Override
+      public void handleWritten(Channel ch) {
+        lock.lock();
+        try {
+          written[0] = true;
+          writable.signalAll();
+        } finally {
+          lock.unlock();
+        }
+      }
+    });
+    lock.lock();
+    try {
+      while (!written[0]) {
+        if (closed) {
+          checkFailure();
+          throw new ClosedChannelException();
+        }
+        await(writable, 0);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private class ChannelInputStream extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return BlockingChannel.this.read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (off < 0 || len < 0 || len > b.length - off) {
+        throw new IndexOutOfBoundsException();
+      }
+      return BlockingChannel.this.read(b, off, len);
+    }
+
+    @Override
+    public int available() {
+      lock.lock();
+      try {
+        return inputBuffer.getReadableSize();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void close() {
+      BlockingChannel.this.close();
+    }
+
+  }
+
+  private class ChannelOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) throws IOException {
+      BlockingChannel.this.write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (off < 0 || len < 0 || len > b.length - off) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (len > 0) {
+        BlockingChannel.this.write(b, off, len);
+      }
+    }
+
+    /**
+     * wait until the bytes written before are written to the socket
+     */
+    @Override
+    public void flush() throws IOException {
+      BlockingChannel.this.flush();
+    }
+
+    @Override
+    public void close() {
+      BlockingChannel.this.close();
+    }
+
+  }
+
+}
@@ -2,6 +2,9 @@ package site.kason.netlib.tcp;
 
 import lombok.SneakyThrows;
 import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.io.IOBufferAllocator;
+import site.kason.netlib.io.UnpooledIOBufferAllocator;
+import site.kason.netlib.metrics.MetricsListener;
 import site.kason.netlib.tcp.pipeline.Codec;
 import site.kason.netlib.tcp.pipeline.CodecInitProgress;
 import site.kason.netlib.tcp.pipeline.Pipeline;
@@ -10,30 +13,84 @@ import site.kason.netlib.tcp.pipeline.Processor;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SocketChannel;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Channel implements Hostable {
 
+  public static final long DEFAULT_RECEIVE_BUFFER_IDLE_MILLIS = 1000;
+
   private Host host;
 
   private SocketChannel socketChannel;
 
-  private final List<WriteTask> writeTasks = new LinkedList<>();
+  private final ArrayDeque<WriteTask> writeTasks = new ArrayDeque<>();
+
+  private final ArrayDeque<ReadTask> readTasks = new ArrayDeque<>();
 
-  private final List<ReadTask> readTasks = new LinkedList<>();
+  /**
+   * copy-on-write,so the hot paths iterate them without locking or allocating
+   */
+  private volatile ChannelFilter[] filters = new ChannelFilter[0];
 
-  private List<ChannelFilter> filters = new LinkedList<>();
+  private final Queue<Codec> codecInitQueue = new ArrayDeque<>();
 
-  private final Queue<Codec> codecInitQueue = new LinkedList<>();
+  private final List<Codec> codecs = new ArrayList<>();
 
   private CodecInitProgress codecInitProgress;
 
-  private List<ConnectionListener> connectionListener = new LinkedList<>();
+  private volatile ConnectionListener[] connectionListeners = new ConnectionListener[0];
+
+  private volatile WriteWatermarkListener[] writeWatermarkListeners = new WriteWatermarkListener[0];
+
+  private volatile int writeBufferLowWaterMark = 32 * 1024;
+
+  private volatile int writeBufferHighWaterMark = 64 * 1024;
+
+  private final AtomicLong pendingWriteBytes = new AtomicLong();
+
+  private final AtomicBoolean writeSaturated = new AtomicBoolean();
+
+  /**
+   * the saturation last reported to the watermark listeners
+   */
+  private boolean writeSaturatedNotified = false;
+
+  private volatile IdleStateListener[] idleStateListeners = new IdleStateListener[0];
+
+  /**
+   * the idle timeouts in nanos and their scheduled checks,indexed by the ordinal of {@link IdleState}
+   */
+  private final long[] idleTimeouts = new long[IdleState.values().length];
+
+  private final Timeout[] idleCheckTimeouts = new Timeout[IdleState.values().length];
+
+  private boolean idleTracking = false;
+
+  private long lastReadTime;
+
+  private long lastWriteTime;
+
+  private volatile long connectTimeout = 0;
+
+  private Timeout connectTimeoutTimeout;
+
+  private volatile long handshakeTimeout = 0;
+
+  private Timeout handshakeTimeoutTimeout;
 
   private boolean closed = false;
   
@@ -43,13 +100,68 @@ public class Channel implements Hostable {
 
   private WriteTask writtenTask;
 
-  private final Pipeline encodePipeline = new Pipeline();
+  private static final int MAX_GATHERING_TASKS = 64;
+
+  private final ByteBuffer[] gatheringBuffers = new ByteBuffer[MAX_GATHERING_TASKS];
+
+  private int gatheringWriteLimit = 64 * 1024;
+
+  /**
+   * the bytes the current write task transferred to the socket directly,or -1 if the socket is full
+   */
+  private long directWriteBytes;
+
+  private final IOBufferAllocator bufferAllocator;
+
+  private final Pipeline encodePipeline;
   
-  private final Pipeline decodePipeline = new Pipeline();
+  private final Pipeline decodePipeline;
+
+  private MetricsListener metricsListener = MetricsListener.NOOP;
+
+  private boolean metricsEnabled = false;
+
+  private AdaptiveReceiveSizePredictor receiveSizePredictor;
+
+  /**
+   * how long the read buffer keeps a grown size without any read,in nanos
+   */
+  private volatile long receiveBufferIdleTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_RECEIVE_BUFFER_IDLE_MILLIS);
+
+  private Timeout receiveBufferIdleTimeout;
+
+  /**
+   * the count of the reads receiving data,which tells the idle check whether the channel read after it was scheduled
+   */
+  private long receiveCount;
+
+  /**
+   * the head of the pending futures,which are only linked and unlinked in the event loop
+   */
+  private ChannelFuture<?> pendingFutures;
+
+  private ConnectFuture connectFuture;
 
   protected Channel(SocketChannel socketChannel, Host host) {
+    this(socketChannel, host, UnpooledIOBufferAllocator.INSTANCE);
+  }
+
+  protected Channel(SocketChannel socketChannel, Host host, IOBufferAllocator bufferAllocator) {
+    this(socketChannel, host, bufferAllocator, false);
+  }
+
+  /**
+   * @param socketChannel the socket channel
+   * @param host the host of the channel
+   * @param bufferAllocator the allocator of buffers
+   * @param directSocketBuffer whether the buffers which the socket reads into and writes from should be direct
+   */
+  protected Channel(SocketChannel socketChannel, Host host, IOBufferAllocator bufferAllocator, boolean directSocketBuffer) {
     this.socketChannel = socketChannel;
     this.host = host;
+    this.bufferAllocator = bufferAllocator;
+    this.encodePipeline = new Pipeline(bufferAllocator, false, directSocketBuffer);
+    this.decodePipeline = new Pipeline(bufferAllocator, directSocketBuffer, false);
   }
 
   /**
@@ -62,19 +174,350 @@ public class Channel implements Hostable {
   @SneakyThrows
   public boolean connect(SocketAddress remote) {
     host.prepareConnect(this);
-    return this.socketChannel.connect(remote);
+    boolean connected = this.socketChannel.connect(remote);
+    if (connected) {
+      if (host.inEventLoop()) {
+        resumeTasks();
+      } else {
+        host.execute(this::resumeTasks);
+      }
+    }
+    long timeout = connectTimeout;
+    if (!connected && timeout > 0) {
+      Timeout t = host.schedule(this, this::handleConnectTimeout, timeout, TimeUnit.NANOSECONDS);
+      if (host.inEventLoop()) {
+        connectTimeoutTimeout = t;
+      } else {
+        host.execute(() -> connectTimeoutTimeout = t);
+      }
+    }
+    return connected;
   }
 
   public boolean connect(String host, int port){
     return connect(new InetSocketAddress(host, port));
   }
 
+  /**
+   * connect the channel to the remote
+   *
+   * @param remote the remote address to connect
+   * @return a future completed with this channel in the event loop when connected,
+   * or failed if failed to connect
+   */
+  public CompletableFuture<Channel> connectAsync(SocketAddress remote) {
+    return startFuture(new ConnectFuture(remote));
+  }
+
+  public CompletableFuture<Void> writeAsync(byte[] data) {
+    return writeAsync(data, 0, data.length);
+  }
+
+  /**
+   * queue the data to write.It is safe to call this method from any thread,
+   * the array must not be modified before the future is completed.
+   *
+   * @param data the data to write
+   * @param offset the offset of the data
+   * @param length the length of the data
+   * @return a future completed in the event loop when the data is written to the socket,
+   * or failed with a {@link ClosedChannelException} if the channel is closed before
+   */
+  public CompletableFuture<Void> writeAsync(byte[] data, int offset, int length) {
+    return startFuture(new WriteFuture(data, offset, length));
+  }
+
+  /**
+   * read exactly the count of bytes.It is safe to call this method from any thread,
+   * reads queued one after another get the data in order,so requests could be pipelined.
+   *
+   * @param length the count of bytes to read
+   * @return a future completed with the bytes in the event loop,
+   * or failed with a {@link ClosedChannelException} if the channel is closed before
+   */
+  public CompletableFuture<byte[]> readAsync(int length) {
+    if (length < 0) {
+      throw new IllegalArgumentException("non-negative length required.");
+    }
+    if (length == 0) {
+      return CompletableFuture.completedFuture(new byte[0]);
+    }
+    return startFuture(new ExactReadFuture(length));
+  }
+
+  /**
+   * queue a read task which delivers its result by itself
+   *
+   * @param future the task
+   * @param <T> the result type
+   * @return the future,which is failed with a {@link ClosedChannelException} if the channel is closed before completed
+   */
+  public <T> CompletableFuture<T> readAsync(ReadFuture<T> future) {
+    return startFuture(future);
+  }
+
+  private <T> CompletableFuture<T> startFuture(ChannelFuture<T> future) {
+    if (!host.inEventLoop()) {
+      host.execute(() -> startFuture(future));
+      return future;
+    }
+    if (closed) {
+      future.completeExceptionally(new ClosedChannelException());
+      return future;
+    }
+    ChannelFuture<?> head = pendingFutures;
+    future.next = head;
+    if (head != null) {
+      head.prev = future;
+    }
+    pendingFutures = future;
+    future.start(this);
+    return future;
+  }
+
+  /**
+   * unlink a completed future,called in the event loop
+   */
+  void finishFuture(ChannelFuture<?> future) {
+    ChannelFuture<?> prev = future.prev;
+    ChannelFuture<?> next = future.next;
+    if (prev != null) {
+      prev.next = next;
+    } else if (pendingFutures == future) {
+      pendingFutures = next;
+    }
+    if (next != null) {
+      next.prev = prev;
+    }
+    future.prev = null;
+    future.next = null;
+  }
+
+  private void failPendingFutures() {
+    ChannelFuture<?> f = pendingFutures;
+    pendingFutures = null;
+    connectFuture = null;
+    while (f != null) {
+      ChannelFuture<?> next = f.next;
+      f.prev = null;
+      f.next = null;
+      f.completeExceptionally(new ClosedChannelException());
+      f = next;
+    }
+  }
+
+  public long getConnectTimeout(TimeUnit unit) {
+    return unit.convert(connectTimeout, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * set the timeout of the connections started later.
+   * If the connection is not established in time,the connection listeners are notified with a {@link SocketTimeoutException}
+   * and the channel is closed.
+   *
+   * @param timeout the timeout,or 0 to wait forever
+   * @param unit the unit of the timeout
+   */
+  public void setConnectTimeout(long timeout, TimeUnit unit) {
+    this.connectTimeout = unit.toNanos(Math.max(0, timeout));
+  }
+
+  public long getHandshakeTimeout(TimeUnit unit) {
+    return unit.convert(handshakeTimeout, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * set the timeout of the initialization of the codecs added later,such as a SSL handshake.
+   * If the codecs are not initialized in time,a {@link HandshakeTimeoutException} is passed to the exception handler of the host.
+   *
+   * @param timeout the timeout,or 0 to wait forever
+   * @param unit the unit of the timeout
+   */
+  public void setHandshakeTimeout(long timeout, TimeUnit unit) {
+    this.handshakeTimeout = unit.toNanos(Math.max(0, timeout));
+  }
+
+  public long getReceiveBufferIdleTime(TimeUnit unit) {
+    return unit.convert(receiveBufferIdleTime, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * set how long the read buffer keeps a size grown by the {@link AdaptiveReceiveSizePredictor} while no data is received.
+   * After the time,an empty read buffer is shrunk to the min size,and the next read resizes it to the predicted size again.
+   *
+   * @param idleTime the idle time,or 0 to keep the buffer
+   * @param unit the unit of the idle time
+   */
+  public void setReceiveBufferIdleTime(long idleTime, TimeUnit unit) {
+    this.receiveBufferIdleTime = unit.toNanos(Math.max(0, idleTime));
+  }
+
+  /**
+   * set the idle timeouts,the idle state listeners are notified every time the channel stays idle for a timeout
+   *
+   * @param readerIdleTime the timeout of {@link IdleState#READER_IDLE},or 0 to disable it
+   * @param writerIdleTime the timeout of {@link IdleState#WRITER_IDLE},or 0 to disable it
+   * @param allIdleTime the timeout of {@link IdleState#ALL_IDLE},or 0 to disable it
+   * @param unit the unit of the timeouts
+   */
+  public void setIdleTimeout(long readerIdleTime, long writerIdleTime, long allIdleTime, TimeUnit unit) {
+    if (!host.inEventLoop()) {
+      host.execute(() -> setIdleTimeout(readerIdleTime, writerIdleTime, allIdleTime, unit));
+      return;
+    }
+    cancelIdleChecks();
+    if (closed) {
+      return;
+    }
+    idleTimeouts[IdleState.READER_IDLE.ordinal()] = unit.toNanos(Math.max(0, readerIdleTime));
+    idleTimeouts[IdleState.WRITER_IDLE.ordinal()] = unit.toNanos(Math.max(0, writerIdleTime));
+    idleTimeouts[IdleState.ALL_IDLE.ordinal()] = unit.toNanos(Math.max(0, allIdleTime));
+    idleTracking = readerIdleTime > 0 || writerIdleTime > 0 || allIdleTime > 0;
+    lastReadTime = lastWriteTime = System.nanoTime();
+    for (IdleState state : IdleState.values()) {
+      long timeout = idleTimeouts[state.ordinal()];
+      if (timeout > 0) {
+        idleCheckTimeouts[state.ordinal()] = host.schedule(this, () -> checkIdle(state), timeout, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  public synchronized void addIdleStateListener(IdleStateListener listener) {
+    this.idleStateListeners = append(this.idleStateListeners, listener);
+  }
+
+  private void checkIdle(IdleState state) {
+    long timeout = idleTimeouts[state.ordinal()];
+    if (closed || timeout <= 0) {
+      return;
+    }
+    long lastActiveTime;
+    if (state == IdleState.READER_IDLE) {
+      lastActiveTime = lastReadTime;
+    } else if (state == IdleState.WRITER_IDLE) {
+      lastActiveTime = lastWriteTime;
+    } else {
+      lastActiveTime = Math.max(lastReadTime, lastWriteTime);
+    }
+    long remaining = timeout - (System.nanoTime() - lastActiveTime);
+    boolean idle = remaining <= 0;
+    idleCheckTimeouts[state.ordinal()] = host.schedule(this, () -> checkIdle(state), idle ? timeout : remaining, TimeUnit.NANOSECONDS);
+    if (idle) {
+      for (IdleStateListener l : idleStateListeners) {
+        l.onChannelIdle(this, state);
+      }
+    }
+  }
+
+  private void cancelIdleChecks() {
+    for (int i = 0; i < idleCheckTimeouts.length; i++) {
+      if (idleCheckTimeouts[i] != null) {
+        idleCheckTimeouts[i].cancel();
+        idleCheckTimeouts[i] = null;
+      }
+    }
+  }
+
+  private void handleConnectTimeout() {
+    connectTimeoutTimeout = null;
+    if (closed || socketChannel.isConnected()) {
+      return;
+    }
+    try {
+      handleConnectFailed(new SocketTimeoutException("connect timed out"));
+    } finally {
+      close();
+    }
+  }
+
+  private void cancelConnectTimeout() {
+    if (connectTimeoutTimeout != null) {
+      connectTimeoutTimeout.cancel();
+      connectTimeoutTimeout = null;
+    }
+  }
+
+  private void handleHandshakeTimeout() {
+    handshakeTimeoutTimeout = null;
+    if (!closed && codecInitProgress != null) {
+      throw new HandshakeTimeoutException("handshake timed out");
+    }
+  }
+
+  private void cancelHandshakeTimeout() {
+    if (handshakeTimeoutTimeout != null) {
+      handshakeTimeoutTimeout.cancel();
+      handshakeTimeoutTimeout = null;
+    }
+  }
+
+  public Host getHost() {
+    return host;
+  }
+
   public SocketChannel socketChannel() {
     return socketChannel;
   }
 
+  /**
+   * set the socket options of this channel.Options which are not set keep their current values.
+   *
+   * @param options the options
+   */
+  @SneakyThrows
+  public void setOptions(ChannelOptions options) {
+    options.apply(socketChannel);
+  }
+
+  /**
+   * get the allocator of the buffers used by this channel.Codecs should allocate their buffers from it.
+   * @return the buffer allocator
+   */
+  public IOBufferAllocator getBufferAllocator() {
+    return bufferAllocator;
+  }
+
+  public MetricsListener getMetricsListener() {
+    return metricsListener;
+  }
+
+  void setMetricsListener(MetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
+    this.metricsEnabled = metricsListener != MetricsListener.NOOP;
+    encodePipeline.setMetricsListener(metricsListener, this);
+    decodePipeline.setMetricsListener(metricsListener, this);
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public AdaptiveReceiveSizePredictor getReceiveSizePredictor() {
+    return receiveSizePredictor;
+  }
+
+  /**
+   * set the predictor which resizes the buffer the socket reads into before every read
+   *
+   * @param receiveSizePredictor the predictor,or null to keep the size of the buffer
+   */
+  public void setReceiveSizePredictor(AdaptiveReceiveSizePredictor receiveSizePredictor) {
+    if (!host.inEventLoop()) {
+      host.execute(() -> setReceiveSizePredictor(receiveSizePredictor));
+      return;
+    }
+    this.receiveSizePredictor = receiveSizePredictor;
+  }
+
+  /**
+   * close the channel and release its buffers.If called from a foreign thread,the channel is closed in its event loop.
+   */
   @SneakyThrows
   public void close(){
+    if (!host.inEventLoop()) {
+      host.execute(this::close);
+      return;
+    }
     this.closePending = false;
     if (this.closed) {
       return;
@@ -83,16 +526,30 @@ public class Channel implements Hostable {
       return;
     }
     this.closed = true;
+    cancelIdleChecks();
+    cancelConnectTimeout();
+    cancelHandshakeTimeout();
+    cancelReceiveBufferIdleCheck();
     try {
-      for (ConnectionListener cl : connectionListener) {
+      for (ConnectionListener cl : connectionListeners) {
         cl.onChannelClosed(this);
       }
     } finally {
       host.closeChannel(this);
       socketChannel.close();
+      releaseResources();
+      failPendingFutures();
     }
   }
 
+  private void releaseResources() {
+    for (Codec c : codecs) {
+      c.release();
+    }
+    encodePipeline.release();
+    decodePipeline.release();
+  }
+
   @Override
   public SelectableChannel getSelectableChannel() {
     return this.socketChannel;
@@ -106,123 +563,483 @@ public class Channel implements Hostable {
   }
 
   public WriteTask filterWrite(WriteTask task) {
-    int count = filters.size();
-    for (int i = count - 1; i >= 0; i--) {
-      ChannelFilter f = filters.get(i);
-      task = f.filterWrite(task);
+    ChannelFilter[] fs = filters;
+    for (int i = fs.length - 1; i >= 0; i--) {
+      task = fs[i].filterWrite(task);
     }
     return task;
   }
 
-  public synchronized void write(WriteTask cb) {
-    cb = filterWrite(cb);
-    this.writeTasks.add(cb);
+  /**
+   * queue a write task.It is safe to call this method from any thread,
+   * the task is always queued in the event loop which owns this channel.
+   *
+   * @param cb the task to queue
+   */
+  public void write(WriteTask cb) {
+    long size = cb.getSize();
+    if (size > 0) {
+      incrementPendingWriteBytes(size);
+    }
+    if (!host.inEventLoop()) {
+      host.execute(() -> queueWrite(cb, size));
+      return;
+    }
+    queueWrite(cb, size);
+  }
+
+  private void queueWrite(WriteTask cb, long size) {
+    WriteTask task = filterWrite(cb);
+    if (task != cb && task.getSize() != size) {
+      task = new SizedWriteTask(task, size);
+    }
+    this.writeTasks.add(task);
     this.continueWrite();
   }
 
-  public synchronized void read(ReadTask cb) {
-    cb = filterRead(cb);
-    this.readTasks.add(cb);
+  private void finishWriteTask(WriteTask task) {
+    long size = task.getSize();
+    if (size > 0) {
+      decrementPendingWriteBytes(size);
+    }
+    task.handleWritten(this);
+  }
+
+  private void incrementPendingWriteBytes(long size) {
+    pendingWriteBytes.addAndGet(size);
+    updateWriteSaturated();
+  }
+
+  private void decrementPendingWriteBytes(long size) {
+    pendingWriteBytes.addAndGet(-size);
+    updateWriteSaturated();
+  }
+
+  /**
+   * update the saturation from the pending write bytes.Writers and the event loop change the pending bytes concurrently,
+   * so the bytes are read again after every change of the saturation,until they agree with it.
+   */
+  private void updateWriteSaturated() {
+    for (;;) {
+      boolean saturated = writeSaturated.get();
+      long pending = pendingWriteBytes.get();
+      boolean shouldSaturate = saturated ? pending >= writeBufferLowWaterMark : pending > writeBufferHighWaterMark;
+      if (shouldSaturate == saturated) {
+        return;
+      }
+      if (writeSaturated.compareAndSet(saturated, shouldSaturate)) {
+        host.execute(this::notifyWriteWatermarkListeners);
+      }
+    }
+  }
+
+  private void notifyWriteWatermarkListeners() {
+    boolean saturated = writeSaturated.get();
+    if (saturated == writeSaturatedNotified || closed) {
+      return;
+    }
+    writeSaturatedNotified = saturated;
+    for (WriteWatermarkListener l : writeWatermarkListeners) {
+      if (saturated) {
+        l.onWriteSaturated(this);
+      } else {
+        l.onWriteDrained(this);
+      }
+    }
+  }
+
+  /**
+   * @return true if the pending write bytes have exceeded the high water mark and not fallen below the low water mark yet
+   */
+  public boolean isWriteSaturated() {
+    return writeSaturated.get();
+  }
+
+  /**
+   * @return the total size of the write tasks queued but not written yet
+   * @see WriteTask#getSize()
+   */
+  public long getPendingWriteBytes() {
+    return pendingWriteBytes.get();
+  }
+
+  public int getWriteBufferLowWaterMark() {
+    return writeBufferLowWaterMark;
+  }
+
+  public int getWriteBufferHighWaterMark() {
+    return writeBufferHighWaterMark;
+  }
+
+  /**
+   * set the water marks of the pending write bytes
+   *
+   * @param low the channel is drained when the pending write bytes fall below it
+   * @param high the channel is saturated when the pending write bytes exceed it
+   */
+  public void setWriteBufferWaterMark(int low, int high) {
+    if (low < 0 || high < low) {
+      throw new IllegalArgumentException("0 <= low <= high required.");
+    }
+    this.writeBufferLowWaterMark = low;
+    this.writeBufferHighWaterMark = high;
+  }
+
+  public synchronized void addWriteWatermarkListener(WriteWatermarkListener listener) {
+    this.writeWatermarkListeners = append(this.writeWatermarkListeners, listener);
+  }
+
+  /**
+   * queue a read task.It is safe to call this method from any thread,
+   * the task is always queued in the event loop which owns this channel.
+   *
+   * @param cb the task to queue
+   */
+  public void read(ReadTask cb) {
+    if (!host.inEventLoop()) {
+      host.execute(() -> read(cb));
+      return;
+    }
+    this.readTasks.add(filterRead(cb));
     this.continueRead();
   }
 
-  public synchronized void continueWrite() {
+  public void continueWrite() {
+    if (!host.inEventLoop()) {
+      host.execute(this::continueWrite);
+      return;
+    }
     this.pauseWritePending = false;
     host.continueWrite(this);
   }
 
-  public synchronized void pauseWrite() {
+  public void pauseWrite() {
+    if (!host.inEventLoop()) {
+      host.execute(this::pauseWrite);
+      return;
+    }
     this.pauseWritePending = true;
   }
 
+  /**
+   * write repeatedly until the socket is full,no task is left or a limit is reached.
+   * Steps which only run write tasks count as writes too.
+   *
+   * @param maxWrites the max count of writes
+   * @param maxBytes the max bytes to write,which is checked before every write
+   * @return true if a limit is reached while there may be more to write
+   */
   @SneakyThrows
-  protected void handleWrite() {
+  protected boolean handleWrite(int maxWrites, long maxBytes) {
+    long bytes = 0;
+    for (int i = 0; i < maxWrites && bytes < maxBytes; i++) {
+      long wlen = writeOnce();
+      if (wlen < 0) {
+        return false;
+      }
+      bytes += wlen;
+    }
+    return true;
+  }
+
+  /**
+   * @return the bytes written to the socket,or -1 if writing should not continue in this iteration
+   */
+  private long writeOnce() throws IOException {
+    if (closed) {
+      return -1;
+    }
     SocketChannel sc = this.socketChannel;
     IOBuffer out = encodePipeline.getOutBuffer();
     encodePipeline.process();
     if (out.getReadableSize() > 0) {
-      ByteBuffer byteBuffer = ByteBuffer.wrap(out.array(), out.getReadPosition(), out.getReadableSize());
+      ByteBuffer byteBuffer = out.readableBuffer();
       int wlen = sc.write(byteBuffer);
+      if (metricsEnabled) {
+        metricsListener.onSocketWrite(this, wlen);
+      }
+      if (idleTracking && wlen > 0) {
+        lastWriteTime = System.nanoTime();
+      }
       out.moveReadPosition(wlen);
-      return;
+      //the socket buffer is full
+      return byteBuffer.hasRemaining() ? -1 : wlen;
     }
     if (writtenTask != null) {
       WriteTask wt = writtenTask;
       writtenTask = null;
-      wt.handleWritten(this);
+      finishWriteTask(wt);
     }
     if (pauseWritePending) {
       pauseWritePending = false;
       host.pauseWrite(this);
-      return;
+      return -1;
     }
-    List<WriteTask> writeCallbacks = this.writeTasks;
-    if (writeCallbacks.isEmpty()) {
+    ArrayDeque<WriteTask> writeCallbacks = this.writeTasks;
+    WriteTask cb = writeCallbacks.peekFirst();
+    if (cb == null) {
       pauseWrite();
-      return;
+      return -1;
     }
-    WriteTask cb = writeCallbacks.get(0);
+    if (cb instanceof GatheringWriteTask && gatheringWriteLimit > 0 && !hasEncoder()) {
+      return gatheringWrite();
+    }
+    directWriteBytes = 0;
     boolean writeFinished = cb.handleWrite(this, encodePipeline.getInBuffer());
+    if (idleTracking) {
+      //tasks like file regions may write to the socket directly
+      lastWriteTime = System.nanoTime();
+    }
     if (writeFinished) {
-      writtenTask = writeCallbacks.remove(0);
+      writtenTask = writeCallbacks.pollFirst();
+    }
+    return directWriteBytes;
+  }
+
+  /**
+   * transfer a region of the file to the socket directly,for write tasks bypassing the write buffer.
+   * The bytes transferred count toward the write spin limit,
+   * and if nothing is transferred,the socket is full and writing continues when the socket is writable again.
+   *
+   * @param file the file
+   * @param position the position of the region
+   * @param count the max bytes to transfer
+   * @return the bytes transferred
+   */
+  public long transferFrom(FileChannel file, long position, long count) throws IOException {
+    long transferred = file.transferTo(position, count, socketChannel);
+    if (metricsEnabled) {
+      metricsListener.onSocketWrite(this, transferred);
+    }
+    directWriteBytes = transferred > 0 && directWriteBytes >= 0 ? directWriteBytes + transferred : -1;
+    return transferred;
+  }
+
+  /**
+   * write the leading gathering tasks to the socket directly in one call
+   *
+   * @return the bytes written,or -1 if the socket is full
+   */
+  private long gatheringWrite() throws IOException {
+    ByteBuffer[] buffers = this.gatheringBuffers;
+    int count = 0;
+    long bytes = 0;
+    for (WriteTask t : writeTasks) {
+      if (count >= buffers.length || !(t instanceof GatheringWriteTask)) {
+        break;
+      }
+      ByteBuffer b = ((GatheringWriteTask) t).getGatheringBuffer();
+      if (count > 0 && bytes + b.remaining() > gatheringWriteLimit) {
+        break;
+      }
+      buffers[count++] = b;
+      bytes += b.remaining();
+    }
+    long wlen;
+    try {
+      wlen = socketChannel.write(buffers, 0, count);
+      if (metricsEnabled) {
+        metricsListener.onSocketWrite(this, wlen);
+      }
+      if (idleTracking && wlen > 0) {
+        lastWriteTime = System.nanoTime();
+      }
+    } finally {
+      Arrays.fill(buffers, 0, count, null);
+    }
+    WriteTask t;
+    while ((t = writeTasks.peekFirst()) != null) {
+      if (!(t instanceof GatheringWriteTask) || ((GatheringWriteTask) t).getGatheringBuffer().hasRemaining()) {
+        break;
+      }
+      writeTasks.pollFirst();
+      finishWriteTask(t);
     }
+    return wlen < bytes ? -1 : wlen;
+  }
+
+  public int getGatheringWriteLimit() {
+    return gatheringWriteLimit;
   }
 
-  public synchronized void continueRead() {
+  /**
+   * set the max bytes written by one gathering write.
+   * Gathering writes are used only if the channel has no encoder.
+   *
+   * @param maxBytes the max bytes per gathering write,or 0 to disable gathering writes
+   */
+  public void setGatheringWriteLimit(int maxBytes) {
+    this.gatheringWriteLimit = maxBytes;
+  }
+
+  public void continueRead() {
     host.continueRead(this);
   }
 
-  public synchronized void pauseRead() {
+  /**
+   * decode the input left in the read buffer again,for codecs which stopped decoding to wait for something else than socket data,
+   * such as the delegated tasks of SSL running in an executor
+   */
+  public void continueDecode() {
+    if (!host.inEventLoop()) {
+      host.execute(this::continueDecode);
+      return;
+    }
+    if (closed) {
+      return;
+    }
+    decodePipeline.process();
+    continueRead();
+  }
+
+  public void pauseRead() {
     host.pauseRead(this);
   }
 
+  /**
+   * read repeatedly while reads fill the buffer,so a busy channel needs fewer selector wakeups
+   *
+   * @param maxReads the max count of reads
+   * @param maxBytes the max bytes to read,which is checked before every read
+   * @return true if a limit is reached while the socket may have more data
+   */
   @SneakyThrows
-  protected void handleRead() {
+  protected boolean handleRead(int maxReads, long maxBytes) {
+    long bytes = 0;
+    for (int i = 0; i < maxReads && bytes < maxBytes; i++) {
+      int rlen = readOnce();
+      if (rlen < 0) {
+        scheduleReceiveBufferIdleCheck();
+        return false;
+      }
+      bytes += rlen;
+    }
+    return true;
+  }
+
+  /**
+   * check the read buffer after the idle time once reading stops,so an idle channel doesn't keep a buffer grown by a burst.
+   * A busy channel keeps its buffer,since it received data before the check.
+   */
+  private void scheduleReceiveBufferIdleCheck() {
+    AdaptiveReceiveSizePredictor predictor = this.receiveSizePredictor;
+    long idleTime = receiveBufferIdleTime;
+    if (predictor == null || idleTime <= 0 || closed || receiveBufferIdleTimeout != null
+            || decodePipeline.getInBuffer().capacity() <= predictor.getMinSize()) {
+      return;
+    }
+    long count = receiveCount;
+    receiveBufferIdleTimeout = host.schedule(this, () -> checkReceiveBufferIdle(count), idleTime, TimeUnit.NANOSECONDS);
+  }
+
+  private void checkReceiveBufferIdle(long count) {
+    receiveBufferIdleTimeout = null;
+    if (closed) {
+      return;
+    }
+    if (count != receiveCount) {
+      scheduleReceiveBufferIdleCheck();
+      return;
+    }
+    AdaptiveReceiveSizePredictor predictor = this.receiveSizePredictor;
+    if (predictor != null && decodePipeline.getInBuffer().getReadableSize() == 0) {
+      decodePipeline.resizeInBuffer(predictor.getMinSize());
+    }
+  }
+
+  private void cancelReceiveBufferIdleCheck() {
+    if (receiveBufferIdleTimeout != null) {
+      receiveBufferIdleTimeout.cancel();
+      receiveBufferIdleTimeout = null;
+    }
+  }
+
+  /**
+   * @return the bytes read if the read filled the buffer,or -1 if reading should not continue in this iteration
+   */
+  private int readOnce() throws IOException {
+    if (closed) {
+      return -1;
+    }
     SocketChannel sc = this.socketChannel;
+    AdaptiveReceiveSizePredictor predictor = this.receiveSizePredictor;
+    if (predictor != null) {
+      decodePipeline.resizeInBuffer(predictor.nextSize());
+    }
     IOBuffer in = decodePipeline.getInBuffer();
     IOBuffer out = decodePipeline.getOutBuffer();
-    ByteBuffer byteBuffer = ByteBuffer.wrap(in.array(), in.getWritePosition(), in.getWritableSize());
+    ByteBuffer byteBuffer = in.writableBuffer();
+    int attempted = byteBuffer.remaining();
     int rlen = sc.read(byteBuffer);
+    if (predictor != null) {
+      predictor.record(Math.max(rlen, 0), attempted);
+    }
+    if (metricsEnabled) {
+      metricsListener.onSocketRead(this, Math.max(rlen, 0));
+    }
     if (rlen == -1) {
       this.closePending = true;
     } else if (rlen > 0) {
       in.setWritePosition(in.getWritePosition() + rlen);
+      receiveCount++;
+      if (idleTracking) {
+        lastReadTime = System.nanoTime();
+      }
     }
     decodePipeline.process();
+    //the socket may have more data only if the buffer is filled
+    int more = rlen > 0 && rlen == attempted ? rlen : -1;
     if (out.getReadableSize() <= 0) {//no data for read
       if (this.closePending) {
         this.close();
+        return -1;
       }
-      return;
+      return readTasks.isEmpty() ? -1 : more;
     }
-    List<ReadTask> readCallbacks = readTasks;
-    if (readCallbacks.size() > 0) {
-      ReadTask cb = readCallbacks.get(0);
-      boolean readFinished = cb.handleRead(this, out);
-      if (readFinished) {
-        readCallbacks.remove(0);
-      }
-      if (readCallbacks.isEmpty()) {
-        pauseRead();
-      } else {
-        continueRead();
-      }
+    ArrayDeque<ReadTask> readCallbacks = readTasks;
+    ReadTask cb = readCallbacks.peekFirst();
+    if (cb == null) {
+      return -1;
+    }
+    boolean readFinished = cb.handleRead(this, out);
+    if (closed) {
+      //the task closed the channel,the codecs and buffers have been released
+      return -1;
     }
+    if (readFinished) {
+      readCallbacks.pollFirst();
+    }
+    if (readCallbacks.isEmpty()) {
+      pauseRead();
+      return -1;
+    }
+    //decode the input left by a full output buffer,or it would wait for more socket data
+    decodePipeline.process();
+    continueRead();
+    return closed ? -1 : more;
   }
 
-  public synchronized void prepareConnect() {
+  public void prepareConnect() {
     host.prepareConnect(this);
   }
 
-  public void addConnectionListener(ConnectionListener connectionListener) {
-    this.connectionListener.add(connectionListener);
+  public synchronized void addConnectionListener(ConnectionListener connectionListener) {
+    this.connectionListeners = append(this.connectionListeners, connectionListener);
   }
 
   public void installFilter(ChannelFilter filter) {
-    this.filters.add(filter);
+    synchronized (this) {
+      this.filters = append(this.filters, filter);
+    }
     filter.installed(this);
   }
 
+  private static <T> T[] append(T[] array, T element) {
+    T[] result = Arrays.copyOf(array, array.length + 1);
+    result[array.length] = element;
+    return result;
+  }
+
   @Override
   public String toString() {
     if (socketChannel != null) {
@@ -239,11 +1056,29 @@ public class Channel implements Hostable {
     return this.readTasks.size();
   }
   
+  /**
+   * add a codec,which is initialized after the codecs added before.It is safe to call this method from any thread,
+   * the codec is always added in the event loop which owns this channel.
+   *
+   * @param codec the codec to add
+   */
   public void addCodec(Codec codec){
+    if (!host.inEventLoop()) {
+      host.execute(() -> addCodec(codec));
+      return;
+    }
+    codecs.add(codec);
     codecInitQueue.add(codec);
     initCodec();
   }
   
+  /**
+   * @return true if data written to this channel is processed by an encoder before sent to the socket
+   */
+  public boolean hasEncoder() {
+    return this.encodePipeline.getProcessorCount() > 0;
+  }
+
   public boolean isReadable(){
     return this.decodePipeline.getOutBuffer().getReadableSize()>0;
   }
@@ -253,22 +1088,52 @@ public class Channel implements Hostable {
   }
 
   protected void handleConnected() {
-    for (ConnectionListener cl : connectionListener) {
+    cancelConnectTimeout();
+    resumeTasks();
+    ConnectFuture cf = connectFuture;
+    if (cf != null) {
+      connectFuture = null;
+      finishFuture(cf);
+      cf.complete(this);
+    }
+    for (ConnectionListener cl : connectionListeners) {
       cl.onChannelConnected(this);
     }
   }
 
   protected void handleConnectFailed(IOException ex) {
-    for (ConnectionListener cl : connectionListener) {
+    cancelConnectTimeout();
+    ConnectFuture cf = connectFuture;
+    if (cf != null) {
+      connectFuture = null;
+      finishFuture(cf);
+      cf.completeExceptionally(ex);
+    }
+    for (ConnectionListener cl : connectionListeners) {
       cl.onChannelConnectFailed(this, ex);
     }
   }
 
+  /**
+   * resume the tasks queued before connected,which are ignored by the host until the socket is connected
+   */
+  private void resumeTasks() {
+    if (!readTasks.isEmpty()) {
+      host.continueRead(this);
+    }
+    if (!pauseWritePending && (!writeTasks.isEmpty() || isWritable())) {
+      host.continueWrite(this);
+    }
+  }
+
   private void initCodec() {
     if (codecInitProgress != null) {
       return;
     }
     final Channel channel = this;
+    if (handshakeTimeout > 0 && !codecInitQueue.isEmpty()) {
+      handshakeTimeoutTimeout = host.schedule(this, this::handleHandshakeTimeout, handshakeTimeout, TimeUnit.NANOSECONDS);
+    }
     codecInitProgress = new CodecInitProgress() {
       private Codec currentCodec;
       @Override
@@ -281,11 +1146,14 @@ public class Channel implements Hostable {
           Processor decoder = currentCodec.getDecoder();
           if (decoder != null) {
             decodePipeline.addProcessor(0, decoder);
+            //decode the input received along with the last handshake messages
+            decodePipeline.process();
           }
           currentCodec = null;
         }
         if (codecInitQueue.isEmpty()) {
           channel.codecInitProgress = null;
+          cancelHandshakeTimeout();
           continueRead();
           continueWrite();
           return;
@@ -297,4 +1165,129 @@ public class Channel implements Hostable {
     codecInitProgress.done();
   }
 
+  private static class ConnectFuture extends ChannelFuture<Channel> {
+
+    private final SocketAddress remote;
+
+    ConnectFuture(SocketAddress remote) {
+      this.remote = remote;
+    }
+
+    @Override
+    void start(Channel channel) {
+      boolean connected;
+      try {
+        connected = channel.connect(remote);
+      } catch (Exception ex) {
+        channel.finishFuture(this);
+        completeExceptionally(ex);
+        return;
+      }
+      if (connected) {
+        channel.finishFuture(this);
+        complete(channel);
+      } else {
+        channel.connectFuture = this;
+      }
+    }
+
+  }
+
+  private static class WriteFuture extends ChannelFuture<Void> implements GatheringWriteTask {
+
+    private final ByteBuffer data;
+
+    private final int size;
+
+    WriteFuture(byte[] data, int offset, int length) {
+      this.data = ByteBuffer.wrap(data, offset, length);
+      this.size = length;
+    }
+
+    @Override
+    void start(Channel channel) {
+      channel.write(this);
+    }
+
+    @Override
+    public boolean handleWrite(Channel channel, IOBuffer buffer) {
+      if (data.hasRemaining()) {
+        buffer.push(data);
+      }
+      return !data.hasRemaining();
+    }
+
+    @Override
+    public void handleWritten(Channel channel) {
+      channel.finishFuture(this);
+      complete(null);
+    }
+
+    @Override
+    public long getSize() {
+      return size;
+    }
+
+    @Override
+    public ByteBuffer getGatheringBuffer() {
+      return data;
+    }
+
+  }
+
+  private static class ExactReadFuture extends ReadFuture<byte[]> {
+
+    private final byte[] data;
+
+    private int position;
+
+    ExactReadFuture(int length) {
+      this.data = new byte[length];
+    }
+
+    @Override
+    protected boolean handleData(Channel channel, IOBuffer buffer) {
+      int size = Math.min(data.length - position, buffer.getReadableSize());
+      buffer.poll(data, position, size);
+      position += size;
+      if (position < data.length) {
+        return false;
+      }
+      succeed(data);
+      return true;
+    }
+
+  }
+
+  /**
+   * keeps the size of a task wrapped by filters
+   */
+  private static class SizedWriteTask implements WriteTask {
+
+    private final WriteTask task;
+
+    private final long size;
+
+    SizedWriteTask(WriteTask task, long size) {
+      this.task = task;
+      this.size = size;
+    }
+
+    @Override
+    public boolean handleWrite(Channel channel, IOBuffer buffer) {
+      return task.handleWrite(channel, buffer);
+    }
+
+    @Override
+    public void handleWritten(Channel channel) {
+      task.handleWritten(channel);
+    }
+
+    @Override
+    public long getSize() {
+      return size;
+    }
+
+  }
+
 }
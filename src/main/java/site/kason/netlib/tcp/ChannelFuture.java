@@ -0,0 +1,24 @@
+package site.kason.netlib.tcp;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A future of an operation on a channel,which is also the task of the operation,so an operation allocates no listener.
+ * The pending futures of a channel are linked in the event loop,so they could be failed when the channel is closed.
+ *
+ * @author Kason Yang
+ */
+abstract class ChannelFuture<T> extends CompletableFuture<T> {
+
+  ChannelFuture<?> prev;
+
+  ChannelFuture<?> next;
+
+  /**
+   * start the operation,called in the event loop after the future is linked to the channel
+   *
+   * @param channel the channel
+   */
+  abstract void start(Channel channel);
+
+}
@@ -1,12 +1,20 @@
 package site.kason.netlib.tcp;
 
 import lombok.SneakyThrows;
+import site.kason.netlib.io.IOBufferAllocator;
+import site.kason.netlib.io.PooledIOBufferAllocator;
+import site.kason.netlib.metrics.MetricsListener;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,15 +31,79 @@ public class ChannelHost implements Host {
     }
   };
 
-  private boolean cancelled = false;
+  private volatile boolean cancelled = false;
+
+  private IOBufferAllocator bufferAllocator = PooledIOBufferAllocator.DEFAULT;
+
+  private boolean directSocketBuffer = false;
+
+  private ChannelOptions channelOptions;
+
+  private int minReceiveSize = AdaptiveReceiveSizePredictor.DEFAULT_MIN_SIZE;
+
+  private int initialReceiveSize = AdaptiveReceiveSizePredictor.DEFAULT_INITIAL_SIZE;
+
+  private int maxReceiveSize = AdaptiveReceiveSizePredictor.DEFAULT_MAX_SIZE;
+
+  private long receiveBufferIdleTime = TimeUnit.MILLISECONDS.toNanos(Channel.DEFAULT_RECEIVE_BUFFER_IDLE_MILLIS);
+
+  public static final int DEFAULT_SPIN_COUNT = 16;
+
+  public static final int DEFAULT_SPIN_BYTES = 512 * 1024;
+
+  /**
+   * how long a server channel stops accepting after an accept fails
+   */
+  private static final long ACCEPT_RETRY_DELAY_MILLIS = 100;
+
+  private int readSpinCount = DEFAULT_SPIN_COUNT;
+
+  private long readSpinBytes = DEFAULT_SPIN_BYTES;
+
+  private int writeSpinCount = DEFAULT_SPIN_COUNT;
+
+  private long writeSpinBytes = DEFAULT_SPIN_BYTES;
+
+  private int acceptSpinCount = DEFAULT_SPIN_COUNT;
+
+  private volatile long acceptSpinLimitHits;
+
+  private volatile long readSpinLimitHits;
+
+  private volatile long writeSpinLimitHits;
+
+  private MetricsListener metricsListener = MetricsListener.NOOP;
+
+  private boolean metricsEnabled = false;
+
+  private volatile Thread eventLoopThread;
+
+  private final MpscQueue<Runnable> taskQueue = new MpscQueue<>();
+
+  private final HashedWheelTimer timer = new HashedWheelTimer(this);
+
+  private final ArrayList<HashedWheelTimer.Entry> expiredTimeouts = new ArrayList<>();
+
+  /**
+   * false only while the loop may block in select(), so submitters wake the selector at most once per iteration
+   */
+  private final AtomicBoolean wakenUp = new AtomicBoolean(true);
 
   private HashMap<SelectableChannel, Hostable> channels = new HashMap<>();
 
   private HashMap<Hostable, SelectableChannel> socketChannels = new HashMap<>();
   
-  private List<Channel> readRequiredList = new LinkedList<>();
-  
-  private List<Channel> writeRequiredList = new LinkedList<>();
+  /**
+   * the channels to read or write without waiting for the selector.
+   * Each is swapped with its spare list every iteration,so neither is copied.
+   */
+  private ArrayList<Channel> readRequiredList = new ArrayList<>();
+
+  private ArrayList<Channel> spareReadRequiredList = new ArrayList<>();
+
+  private ArrayList<Channel> writeRequiredList = new ArrayList<>();
+
+  private ArrayList<Channel> spareWriteRequiredList = new ArrayList<>();
 
   //private ByteBuffer readBuffer = ByteBuffer.allocate(40960);
   public static ChannelHost create() throws IOException {
@@ -40,14 +112,25 @@ public class ChannelHost implements Host {
 
   @Override
   public void prepareConnect(Channel ch) {
+    if (!inEventLoop()) {
+      runInEventLoop(() -> prepareConnect(ch));
+      return;
+    }
     this.interest(ch, SelectionKey.OP_CONNECT, true);
   }
 
   @Override
   public void continueWrite(Channel ch) {
+    if (!inEventLoop()) {
+      runInEventLoop(() -> continueWrite(ch));
+      return;
+    }
+    if (!ch.socketChannel().isConnected()) {
+      //resumed when connected,an unconnected socket is reported ready by the selector
+      return;
+    }
     if(ch.isWritable()){
       this.writeRequiredList.add(ch);
-      selector.wakeup();
     }else{
       this.interest(ch, SelectionKey.OP_WRITE, true);
     }
@@ -55,14 +138,25 @@ public class ChannelHost implements Host {
 
   @Override
   public void pauseWrite(Channel ch) {
+    if (!inEventLoop()) {
+      runInEventLoop(() -> pauseWrite(ch));
+      return;
+    }
     this.interest(ch, SelectionKey.OP_WRITE, false);
   }
 
   @Override
   public void continueRead(Channel ch) {
+    if (!inEventLoop()) {
+      runInEventLoop(() -> continueRead(ch));
+      return;
+    }
+    if (!ch.socketChannel().isConnected()) {
+      //resumed when connected,an unconnected socket is reported ready by the selector
+      return;
+    }
     if(ch.isReadable()){
       this.readRequiredList.add(ch);
-      selector.wakeup();
     }else{
       this.interest(ch, SelectionKey.OP_READ, true);
     }
@@ -70,6 +164,10 @@ public class ChannelHost implements Host {
 
   @Override
   public void pauseRead(Channel ch) {
+    if (!inEventLoop()) {
+      runInEventLoop(() -> pauseRead(ch));
+      return;
+    }
     this.interest(ch, SelectionKey.OP_READ, false);
   }
 
@@ -81,6 +179,309 @@ public class ChannelHost implements Host {
     this.exceptionHandler = exceptionHandler;
   }
 
+  public IOBufferAllocator getBufferAllocator() {
+    return bufferAllocator;
+  }
+
+  /**
+   * set the allocator of the buffers used by channels created later
+   * @param bufferAllocator the allocator
+   */
+  public void setBufferAllocator(IOBufferAllocator bufferAllocator) {
+    this.bufferAllocator = bufferAllocator;
+  }
+
+  public boolean isDirectSocketBuffer() {
+    return directSocketBuffer;
+  }
+
+  /**
+   * set whether channels created later read from and write to the socket with direct buffers.
+   * Read tasks of a channel without decoder and write tasks of a channel without encoder
+   * then get buffers which have no backing array.
+   * @param directSocketBuffer true to use direct buffers
+   */
+  public void setDirectSocketBuffer(boolean directSocketBuffer) {
+    this.directSocketBuffer = directSocketBuffer;
+  }
+
+  public ChannelOptions getChannelOptions() {
+    return channelOptions;
+  }
+
+  /**
+   * set the socket options of the client channels and server channels created later.
+   * Server channels pass the options to the channels they accept,see {@link ServerChannel#setChannelOptions(ChannelOptions)}.
+   *
+   * @param channelOptions the options,or null to keep the defaults of the platform
+   */
+  public void setChannelOptions(ChannelOptions channelOptions) {
+    this.channelOptions = channelOptions;
+  }
+
+  /**
+   * set the sizes of the buffers which channels created later read the socket into.
+   * The size adapts to the reads between the min and max size,see {@link AdaptiveReceiveSizePredictor}.
+   * If all sizes are equal,the size is fixed.
+   *
+   * @param minSize the min size
+   * @param initialSize the initial size
+   * @param maxSize the max size
+   */
+  public void setReceiveBufferSizes(int minSize, int initialSize, int maxSize) {
+    if (minSize <= 0 || initialSize < minSize || maxSize < initialSize) {
+      throw new IllegalArgumentException("0 < min size <= initial size <= max size required.");
+    }
+    this.minReceiveSize = minSize;
+    this.initialReceiveSize = initialSize;
+    this.maxReceiveSize = maxSize;
+  }
+
+  /**
+   * set how long the read buffers of channels created later keep a grown size while no data is received
+   *
+   * @param idleTime the idle time,or 0 to keep the buffers
+   * @param unit the unit of the idle time
+   * @see Channel#setReceiveBufferIdleTime(long, TimeUnit)
+   */
+  public void setReceiveBufferIdleTime(long idleTime, TimeUnit unit) {
+    this.receiveBufferIdleTime = unit.toNanos(Math.max(0, idleTime));
+  }
+
+  /**
+   * set how much a channel may read when it is handled once in a loop iteration.
+   * A channel keeps reading while its reads fill the read buffer,until one of the limits is reached;
+   * the rest is read in the next iteration,after the other channels are handled.
+   *
+   * @param maxReads the max count of reads,1 to read once per iteration
+   * @param maxBytes the max bytes,checked before every read
+   */
+  public void setReadSpinLimit(int maxReads, long maxBytes) {
+    if (maxReads <= 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("positive limits required.");
+    }
+    this.readSpinCount = maxReads;
+    this.readSpinBytes = maxBytes;
+  }
+
+  /**
+   * set how much a channel may write when it is handled once in a loop iteration.
+   * A channel keeps writing until the socket is full,it has nothing to write or one of the limits is reached.
+   * Steps which only run write tasks count as writes too.
+   *
+   * @param maxWrites the max count of writes,1 to write once per iteration
+   * @param maxBytes the max bytes,checked before every write
+   */
+  public void setWriteSpinLimit(int maxWrites, long maxBytes) {
+    if (maxWrites <= 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("positive limits required.");
+    }
+    this.writeSpinCount = maxWrites;
+    this.writeSpinBytes = maxBytes;
+  }
+
+  /**
+   * set how many connections a server channel may accept when it is ready in a loop iteration.
+   * The rest are accepted in the next iteration,after the other channels are handled.
+   * To tell whether more connections are pending,one more connection may be accepted after the limit,
+   * which is counted by {@link #getAcceptSpinLimitHits()}.
+   *
+   * @param maxAccepts the max count of accepts,1 to accept once per iteration
+   */
+  public void setAcceptSpinLimit(int maxAccepts) {
+    if (maxAccepts <= 0) {
+      throw new IllegalArgumentException("positive limit required.");
+    }
+    this.acceptSpinCount = maxAccepts;
+  }
+
+  /**
+   * @return how many times a server channel stopped accepting because of the accept spin limit while more connections were pending
+   */
+  public long getAcceptSpinLimitHits() {
+    return acceptSpinLimitHits;
+  }
+
+  /**
+   * @return how many times a channel stopped reading because of the read spin limit
+   */
+  public long getReadSpinLimitHits() {
+    return readSpinLimitHits;
+  }
+
+  /**
+   * @return how many times a channel stopped writing because of the write spin limit
+   */
+  public long getWriteSpinLimitHits() {
+    return writeSpinLimitHits;
+  }
+
+  public MetricsListener getMetricsListener() {
+    return metricsListener;
+  }
+
+  /**
+   * set the listener of the metrics of this host and the channels created after.
+   * Metrics are disabled if the listener is {@link MetricsListener#NOOP}.
+   *
+   * @param metricsListener the listener
+   */
+  public void setMetricsListener(MetricsListener metricsListener) {
+    this.metricsListener = metricsListener == null ? MetricsListener.NOOP : metricsListener;
+    this.metricsEnabled = this.metricsListener != MetricsListener.NOOP;
+  }
+
+  /**
+   * check whether the current thread is the thread running this host's event loop.
+   * Before {@link #listen()} is called, every thread is treated as the loop thread.
+   *
+   * @return true if the caller may touch the selector directly
+   */
+  public boolean inEventLoop() {
+    Thread loopThread = eventLoopThread;
+    return loopThread == null || loopThread == Thread.currentThread();
+  }
+
+  void bindEventLoop(Thread thread) {
+    this.eventLoopThread = thread;
+  }
+
+  /**
+   * run the task in the event loop of this host.The task is always queued,even if the caller is the loop thread.
+   *
+   * @param task the task to run
+   */
+  @Override
+  public void execute(Runnable task) {
+    if (metricsEnabled) {
+      Runnable queuedTask = task;
+      long queuedTime = System.nanoTime();
+      task = () -> {
+        metricsListener.onTaskLag(this, System.nanoTime() - queuedTime);
+        queuedTask.run();
+      };
+    }
+    taskQueue.offer(task);
+    if (!inEventLoop()) {
+      wakeup();
+    }
+  }
+
+  @Override
+  public void execute(Channel ch, Runnable task) {
+    execute(() -> execChannelBusiness(ch, task));
+  }
+
+  /**
+   * run the task in the event loop of this host
+   *
+   * @param task the task to run
+   * @param <T> the result type
+   * @return a future completed with the result of the task
+   */
+  public <T> Future<T> submit(Callable<T> task) {
+    FutureTask<T> future = new FutureTask<>(task);
+    execute(future);
+    return future;
+  }
+
+  /**
+   * run the task in the event loop of this host after the delay.
+   * The loop wakes up on the first timer tick after the deadline,the tick is 10 milliseconds.
+   *
+   * @param task the task to run
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @return the timeout which could cancel the task
+   */
+  @Override
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    return schedule(null, task, delay, unit);
+  }
+
+  /**
+   * run the task in the event loop of this host after the delay.
+   * Exceptions thrown by the task are handled as exceptions of the channel.
+   *
+   * @param ch the channel
+   * @param task the task to run
+   * @param delay the delay
+   * @param unit the unit of the delay
+   * @return the timeout which could cancel the task
+   */
+  @Override
+  public Timeout schedule(Channel ch, Runnable task, long delay, TimeUnit unit) {
+    HashedWheelTimer.Entry timeout = timer.newTimeout(ch, task, unit.toNanos(delay));
+    if (inEventLoop()) {
+      timer.add(timeout);
+    } else {
+      execute(() -> timer.add(timeout));
+    }
+    return timeout;
+  }
+
+  /**
+   * @return the count of scheduled tasks which have not run or been cancelled
+   */
+  public int getPendingTimeoutCount() {
+    return timer.size();
+  }
+
+  private int runExpiredTimeouts() {
+    ArrayList<HashedWheelTimer.Entry> expired = this.expiredTimeouts;
+    timer.expire(System.nanoTime(), expired);
+    int count = expired.size();
+    for (int i = 0; i < count; i++) {
+      HashedWheelTimer.Entry t = expired.get(i);
+      if (!t.expire()) {
+        continue;
+      }
+      if (t.channel != null) {
+        execChannelBusiness(t.channel, t.task);
+      } else {
+        try {
+          t.task.run();
+        } catch (Throwable ex) {
+          Logger.getLogger(ChannelHost.class.getName()).log(Level.SEVERE, null, ex);
+        }
+      }
+    }
+    expired.clear();
+    return count;
+  }
+
+  private void wakeup() {
+    if (wakenUp.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+  }
+
+  private void runInEventLoop(Runnable task) {
+    if (inEventLoop()) {
+      task.run();
+    } else {
+      execute(task);
+    }
+  }
+
+  private int runPendingTasks() {
+    int count = 0;
+    Runnable t;
+    while ((t = taskQueue.poll()) != null) {
+      count++;
+      try {
+        t.run();
+      } catch (Throwable ex) {
+        Logger.getLogger(ChannelHost.class.getName()).log(Level.SEVERE, null, ex);
+      }
+    }
+    return count;
+  }
+
+  private boolean hasPendingWork() {
+    return !taskQueue.isEmpty() || !readRequiredList.isEmpty() || !writeRequiredList.isEmpty();
+  }
+
   private void interest(Channel ch, int key, boolean interest) {
     SocketChannel sc = ch.socketChannel();
     SelectionKey selectionKey = sc.keyFor(selector);
@@ -92,7 +493,6 @@ public class ChannelHost implements Host {
         ops &= ~key;
       }
       selectionKey.interestOps(ops);
-      selector.wakeup();
     }catch(CancelledKeyException ex){
       //ignore it
     }
@@ -100,20 +500,20 @@ public class ChannelHost implements Host {
   }
 
   public void stopListen() {
-    selector.wakeup();
     cancelled = true;
+    selector.wakeup();
   }
 
   private void onSocketChannelKey(SelectionKey key) {
     SocketChannel sc = (SocketChannel) key.channel();
     Channel ch = (Channel) channels.get(sc);
     if (key.isReadable()) {
-      if (!execChannelBusiness(ch, ch::handleRead)) {
+      if (!execChannelBusiness(ch, () -> handleRead(ch))) {
         return;
       }
     }
     if (key.isWritable()) {
-      if (!execChannelBusiness(ch, ch::handleWrite)) {
+      if (!execChannelBusiness(ch, () -> handleWrite(ch))) {
         return;
       }
     }
@@ -132,21 +532,48 @@ public class ChannelHost implements Host {
 
   @SneakyThrows
   public void listen() {
+    eventLoopThread = Thread.currentThread();
     for (;;) {
-      selector.select();
+      wakenUp.set(false);
+      long selectStartTime = metricsEnabled ? System.nanoTime() : 0;
+      int readyKeys;
+      long timeoutNanos;
+      if (hasPendingWork() || (timeoutNanos = timer.nanosToNextTick(System.nanoTime())) == 0) {
+        readyKeys = selector.selectNow();
+      } else if (timeoutNanos < 0) {
+        readyKeys = selector.select();
+      } else {
+        readyKeys = selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeoutNanos + 999_999)));
+      }
+      wakenUp.set(true);
       if (cancelled) {
         return;
       }
-      List<Channel> readList = new ArrayList<>(this.readRequiredList);
-      this.readRequiredList.clear();
-      for (Channel r : readList) {
-        execChannelBusiness(r, r::handleRead);
+      long processStartTime = 0;
+      if (metricsEnabled) {
+        processStartTime = System.nanoTime();
+        metricsListener.onSelect(this, readyKeys, processStartTime - selectStartTime);
+      }
+      int tasks = runPendingTasks();
+      tasks += runExpiredTimeouts();
+      ArrayList<Channel> readList = this.readRequiredList;
+      this.readRequiredList = this.spareReadRequiredList;
+      int readRequired = readList.size();
+      for (int i = 0; i < readRequired; i++) {
+        Channel r = readList.get(i);
+        execChannelBusiness(r, () -> handleRead(r));
       }
-      List<Channel> writeList = new ArrayList<>(this.writeRequiredList);
-      this.writeRequiredList.clear();
-      for (Channel w : writeList) {
-        execChannelBusiness(w, w::handleWrite);
+      readList.clear();
+      this.spareReadRequiredList = readList;
+      ArrayList<Channel> writeList = this.writeRequiredList;
+      this.writeRequiredList = this.spareWriteRequiredList;
+      int writeRequired = writeList.size();
+      for (int i = 0; i < writeRequired; i++) {
+        Channel w = writeList.get(i);
+        execChannelBusiness(w, () -> handleWrite(w));
       }
+      writeList.clear();
+      this.spareWriteRequiredList = writeList;
       Set<SelectionKey> selectionKeys = selector.selectedKeys();
       Iterator<SelectionKey> iter = selectionKeys.iterator();
       while (iter.hasNext()) {
@@ -156,15 +583,7 @@ public class ChannelHost implements Host {
           continue;
         }
         if (key.isAcceptable()) {
-          ServerSocketChannel nssc = (ServerSocketChannel) key.channel();
-          SocketChannel sc = nssc.accept();
-          if (sc == null) {
-            continue;
-          }
-          sc.configureBlocking(false);
-          Channel ch = createChannel(sc);
-          ServerChannel serverChannel = (ServerChannel) channels.get(nssc);
-          execChannelBusiness(ch, () -> serverChannel.accepted(ch));
+          acceptConnections(key);
         } else {
           try{
             this.onSocketChannelKey(key);
@@ -173,6 +592,80 @@ public class ChannelHost implements Host {
           }
         }
       }
+      if (metricsEnabled) {
+        metricsListener.onLoopIteration(this, tasks, readRequired, writeRequired, System.nanoTime() - processStartTime);
+      }
+    }
+  }
+
+  private void acceptConnections(SelectionKey key) {
+    ServerSocketChannel ssc = (ServerSocketChannel) key.channel();
+    ServerChannel serverChannel = (ServerChannel) channels.get(ssc);
+    for (int i = 0; i < acceptSpinCount; i++) {
+      if (!acceptConnection(key, ssc, serverChannel)) {
+        return;
+      }
+    }
+    //the limit is hit only if another connection is pending,which can't be left in the backlog once accepted
+    if (acceptConnection(key, ssc, serverChannel)) {
+      acceptSpinLimitHits++;
+    }
+  }
+
+  /**
+   * @return true if a pending connection is accepted,or false if none is pending or accepting fails
+   */
+  private boolean acceptConnection(SelectionKey key, ServerSocketChannel ssc, ServerChannel serverChannel) {
+    SocketChannel sc;
+    try {
+      sc = ssc.accept();
+    } catch (IOException ex) {
+      //such as too many open files,the key stays ready until a pending connection is accepted
+      Logger.getLogger(ChannelHost.class.getName()).log(Level.SEVERE, null, ex);
+      pauseAccept(key);
+      return false;
+    }
+    if (sc == null) {
+      return false;
+    }
+    try {
+      sc.configureBlocking(false);
+    } catch (IOException ex) {
+      Logger.getLogger(ChannelHost.class.getName()).log(Level.SEVERE, null, ex);
+      try {
+        sc.close();
+      } catch (IOException closeEx) {
+        Logger.getLogger(ChannelHost.class.getName()).log(Level.SEVERE, null, closeEx);
+      }
+      return true;
+    }
+    serverChannel.getHost().acceptChannel(serverChannel, sc);
+    return true;
+  }
+
+  /**
+   * stop accepting for a while instead of retrying the failed accept in every iteration
+   *
+   * @param key the key of the server channel
+   */
+  private void pauseAccept(SelectionKey key) {
+    key.interestOps(0);
+    schedule(() -> {
+      if (key.isValid()) {
+        key.interestOps(SelectionKey.OP_ACCEPT);
+      }
+    }, ACCEPT_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private void handleRead(Channel ch) {
+    if (ch.handleRead(readSpinCount, readSpinBytes)) {
+      readSpinLimitHits++;
+    }
+  }
+
+  private void handleWrite(Channel ch) {
+    if (ch.handleWrite(writeSpinCount, writeSpinBytes)) {
+      writeSpinLimitHits++;
     }
   }
 
@@ -186,7 +679,19 @@ public class ChannelHost implements Host {
     }
   }
 
-  private void hostChannel(Hostable channel) throws ClosedChannelException {
+  void hostChannel(Hostable channel) {
+    if (!inEventLoop()) {
+      runInEventLoop(() -> hostChannel(channel));
+      return;
+    }
+    try {
+      registerChannel(channel);
+    } catch (ClosedChannelException ex) {
+      throw new IllegalStateException("channel is closed", ex);
+    }
+  }
+
+  private void registerChannel(Hostable channel) throws ClosedChannelException {
     SelectableChannel sc = channel.getSelectableChannel();
     channels.put(sc, channel);
     socketChannels.put(channel, sc);
@@ -203,10 +708,17 @@ public class ChannelHost implements Host {
   
   @Override
   public void closeChannel(Hostable channel){
+    if (!inEventLoop()) {
+      runInEventLoop(() -> closeChannel(channel));
+      return;
+    }
     SelectableChannel sc = channel.getSelectableChannel();
     channels.remove(sc);
     socketChannels.remove(channel);
-    sc.keyFor(selector).cancel();
+    SelectionKey key = sc.keyFor(selector);
+    if (key != null) {
+      key.cancel();
+    }
   }
 
   @Override
@@ -214,22 +726,52 @@ public class ChannelHost implements Host {
   public Channel createChannel() {
     SocketChannel sc = SocketChannel.open();
     sc.configureBlocking(false);
+    if (channelOptions != null) {
+      channelOptions.apply(sc);
+    }
     return createChannel(sc);
   }
 
   @Override
-  @SneakyThrows
+  public void acceptChannel(ServerChannel serverChannel, SocketChannel sc) {
+    if (!inEventLoop()) {
+      runInEventLoop(() -> acceptChannel(serverChannel, sc));
+      return;
+    }
+    Channel ch = createChannel(sc);
+    ChannelOptions options = serverChannel.getChannelOptions();
+    if (options != null && !execChannelBusiness(ch, () -> ch.setOptions(options))) {
+      return;
+    }
+    execChannelBusiness(ch, () -> serverChannel.accepted(ch));
+  }
+
+  @Override
   public Channel createChannel(SocketChannel sc){
-    Channel ch = new Channel(sc, this);
+    Channel ch = new Channel(sc, this, bufferAllocator, directSocketBuffer);
+    ch.setMetricsListener(metricsListener);
+    ch.setReceiveSizePredictor(new AdaptiveReceiveSizePredictor(minReceiveSize, initialReceiveSize, maxReceiveSize));
+    ch.setReceiveBufferIdleTime(receiveBufferIdleTime, TimeUnit.NANOSECONDS);
     this.hostChannel(ch);
     return ch;
   }
 
   @Override
-  @SneakyThrows
   public ServerChannel createServerChannel(SocketAddress endpoint, AcceptHandler acceptHandler) {
+    return createServerChannel(endpoint, 0, acceptHandler);
+  }
+
+  /**
+   * @param endpoint the address to bind
+   * @param backlog the max count of pending connections,0 to use the default of the platform
+   * @param acceptHandler the handler of accepted channels
+   * @return the server channel
+   */
+  @SneakyThrows
+  public ServerChannel createServerChannel(SocketAddress endpoint, int backlog, AcceptHandler acceptHandler) {
     ServerChannel sc = ServerChannel.create(this, acceptHandler);
-    sc.bind(endpoint);
+    sc.setChannelOptions(channelOptions);
+    sc.bind(endpoint, backlog);
     this.hostChannel(sc);
     return sc;
   }
@@ -0,0 +1,337 @@
+package site.kason.netlib.tcp;
+
+import lombok.SneakyThrows;
+import site.kason.netlib.io.IOBufferAllocator;
+import site.kason.netlib.metrics.MetricsListener;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A host which runs one boss loop for accepting connections and several worker loops
+ * for channel business. Accepted channels are assigned to the workers in round-robin order,
+ * unless the server channels are sharded over the workers by {@link #createShardedServerChannels(SocketAddress, int, AcceptHandler)}.
+ *
+ * @author Kason Yang
+ */
+public class ChannelHostGroup implements Host {
+
+  private final ChannelHost boss;
+
+  private final ChannelHost[] workers;
+
+  private final Thread[] workerThreads;
+
+  private final AtomicInteger nextWorker = new AtomicInteger();
+
+  private ChannelOptions channelOptions;
+
+  public static ChannelHostGroup create() throws IOException {
+    return create(Runtime.getRuntime().availableProcessors());
+  }
+
+  public static ChannelHostGroup create(int workerCount) throws IOException {
+    if (workerCount <= 0) {
+      throw new IllegalArgumentException("positive worker count required.");
+    }
+    return new ChannelHostGroup(workerCount);
+  }
+
+  protected ChannelHostGroup(int workerCount) throws IOException {
+    boss = ChannelHost.create();
+    workers = new ChannelHost[workerCount];
+    workerThreads = new Thread[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      workers[i] = ChannelHost.create();
+    }
+  }
+
+  public int getWorkerCount() {
+    return workers.length;
+  }
+
+  public void setExceptionHandler(ExceptionHandler exceptionHandler) {
+    boss.setExceptionHandler(exceptionHandler);
+    for (ChannelHost w : workers) {
+      w.setExceptionHandler(exceptionHandler);
+    }
+  }
+
+  public void setBufferAllocator(IOBufferAllocator bufferAllocator) {
+    for (ChannelHost w : workers) {
+      w.setBufferAllocator(bufferAllocator);
+    }
+  }
+
+  public void setDirectSocketBuffer(boolean directSocketBuffer) {
+    for (ChannelHost w : workers) {
+      w.setDirectSocketBuffer(directSocketBuffer);
+    }
+  }
+
+  public ChannelOptions getChannelOptions() {
+    return channelOptions;
+  }
+
+  public void setChannelOptions(ChannelOptions channelOptions) {
+    this.channelOptions = channelOptions;
+    for (ChannelHost w : workers) {
+      w.setChannelOptions(channelOptions);
+    }
+  }
+
+  public void setReceiveBufferSizes(int minSize, int initialSize, int maxSize) {
+    for (ChannelHost w : workers) {
+      w.setReceiveBufferSizes(minSize, initialSize, maxSize);
+    }
+  }
+
+  public void setReceiveBufferIdleTime(long idleTime, TimeUnit unit) {
+    for (ChannelHost w : workers) {
+      w.setReceiveBufferIdleTime(idleTime, unit);
+    }
+  }
+
+  public void setAcceptSpinLimit(int maxAccepts) {
+    boss.setAcceptSpinLimit(maxAccepts);
+    for (ChannelHost w : workers) {
+      w.setAcceptSpinLimit(maxAccepts);
+    }
+  }
+
+  public void setReadSpinLimit(int maxReads, long maxBytes) {
+    for (ChannelHost w : workers) {
+      w.setReadSpinLimit(maxReads, maxBytes);
+    }
+  }
+
+  public void setWriteSpinLimit(int maxWrites, long maxBytes) {
+    for (ChannelHost w : workers) {
+      w.setWriteSpinLimit(maxWrites, maxBytes);
+    }
+  }
+
+  /**
+   * @return the sum of {@link ChannelHost#getReadSpinLimitHits()} of the workers
+   */
+  public long getReadSpinLimitHits() {
+    long hits = 0;
+    for (ChannelHost w : workers) {
+      hits += w.getReadSpinLimitHits();
+    }
+    return hits;
+  }
+
+  /**
+   * @return the sum of {@link ChannelHost#getWriteSpinLimitHits()} of the workers
+   */
+  public long getWriteSpinLimitHits() {
+    long hits = 0;
+    for (ChannelHost w : workers) {
+      hits += w.getWriteSpinLimitHits();
+    }
+    return hits;
+  }
+
+  public void setMetricsListener(MetricsListener metricsListener) {
+    boss.setMetricsListener(metricsListener);
+    for (ChannelHost w : workers) {
+      w.setMetricsListener(metricsListener);
+    }
+  }
+
+  /**
+   * start the worker loops and run the boss loop in the current thread until {@link #stopListen()} is called.
+   */
+  @SneakyThrows
+  public void listen() {
+    for (int i = 0; i < workers.length; i++) {
+      ChannelHost w = workers[i];
+      Thread t = new Thread(w::listen, "netlib-worker-" + i);
+      w.bindEventLoop(t);
+      workerThreads[i] = t;
+      t.start();
+    }
+    try {
+      boss.listen();
+    } finally {
+      for (ChannelHost w : workers) {
+        w.stopListen();
+      }
+      for (Thread t : workerThreads) {
+        t.join();
+      }
+    }
+  }
+
+  public void stopListen() {
+    boss.stopListen();
+  }
+
+  private ChannelHost nextWorker() {
+    int idx = nextWorker.getAndIncrement() & Integer.MAX_VALUE;
+    return workers[idx % workers.length];
+  }
+
+  /**
+   * check whether the caller is running in the boss loop
+   */
+  @Override
+  public boolean inEventLoop() {
+    return boss.inEventLoop();
+  }
+
+  /**
+   * run the task in the boss loop.Tasks of a channel should be executed by {@code channel.getHost()}.
+   */
+  @Override
+  public void execute(Runnable task) {
+    boss.execute(task);
+  }
+
+  @Override
+  public void execute(Channel ch, Runnable task) {
+    ch.getHost().execute(ch, task);
+  }
+
+  /**
+   * run the task in the boss loop after the delay
+   */
+  @Override
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    return boss.schedule(task, delay, unit);
+  }
+
+  @Override
+  public Timeout schedule(Channel ch, Runnable task, long delay, TimeUnit unit) {
+    return ch.getHost().schedule(ch, task, delay, unit);
+  }
+
+  @Override
+  public void continueWrite(Channel ch) {
+    ch.getHost().continueWrite(ch);
+  }
+
+  @Override
+  public void pauseWrite(Channel ch) {
+    ch.getHost().pauseWrite(ch);
+  }
+
+  @Override
+  public void continueRead(Channel ch) {
+    ch.getHost().continueRead(ch);
+  }
+
+  @Override
+  public void pauseRead(Channel ch) {
+    ch.getHost().pauseRead(ch);
+  }
+
+  @Override
+  public void prepareConnect(Channel ch) {
+    ch.getHost().prepareConnect(ch);
+  }
+
+  @Override
+  public Channel createChannel() {
+    return nextWorker().createChannel();
+  }
+
+  @Override
+  public Channel createChannel(SocketChannel sc) {
+    return nextWorker().createChannel(sc);
+  }
+
+  @Override
+  public ServerChannel createServerChannel(SocketAddress endpoint, AcceptHandler acceptHandler) {
+    return createServerChannel(endpoint, 0, acceptHandler);
+  }
+
+  /**
+   * create a server channel accepting in the boss loop
+   *
+   * @param endpoint the address to bind
+   * @param backlog the max count of pending connections,0 to use the default of the platform
+   * @param acceptHandler the handler of accepted channels
+   * @return the server channel
+   */
+  @SneakyThrows
+  public ServerChannel createServerChannel(SocketAddress endpoint, int backlog, AcceptHandler acceptHandler) {
+    ServerChannel sc = ServerChannel.create(this, acceptHandler);
+    sc.setChannelOptions(channelOptions);
+    sc.bind(endpoint, backlog);
+    boss.hostChannel(sc);
+    return sc;
+  }
+
+  /**
+   * bind a server channel with SO_REUSEPORT in every worker loop,so the kernel spreads the connections over the workers
+   * and each worker accepts its own connections without the boss loop.
+   * If SO_REUSEPORT is not supported,a single server channel is created in the boss loop instead.
+   *
+   * @param endpoint the address to bind,a zero port is resolved by the first server channel
+   * @param backlog the max count of pending connections of each server channel,0 to use the default of the platform
+   * @param acceptHandler the handler of accepted channels
+   * @return the server channels
+   * @see ServerChannel#isReusePortSupported()
+   */
+  @SneakyThrows
+  public List<ServerChannel> createShardedServerChannels(SocketAddress endpoint, int backlog, AcceptHandler acceptHandler) {
+    if (!ServerChannel.isReusePortSupported()) {
+      return Collections.singletonList(createServerChannel(endpoint, backlog, acceptHandler));
+    }
+    List<ServerChannel> serverChannels = new ArrayList<>(workers.length);
+    try {
+      for (ChannelHost w : workers) {
+        ServerChannel sc = ServerChannel.create(w, acceptHandler);
+        serverChannels.add(sc);
+        sc.setChannelOptions(channelOptions);
+        sc.setReusePort(true);
+        sc.bind(endpoint, backlog);
+        endpoint = sc.serverSocketChannel().getLocalAddress();
+      }
+    } catch (IOException ex) {
+      for (ServerChannel sc : serverChannels) {
+        sc.serverSocketChannel().close();
+      }
+      throw ex;
+    }
+    for (ServerChannel sc : serverChannels) {
+      ((ChannelHost) sc.getHost()).hostChannel(sc);
+    }
+    return serverChannels;
+  }
+
+  public ServerChannel createServerChannel(String host, int port, AcceptHandler acceptHandler) {
+    return createServerChannel(new InetSocketAddress(host, port), acceptHandler);
+  }
+
+  public ServerChannel createServerChannel(int port, AcceptHandler acceptHandler) {
+    return createServerChannel(new InetSocketAddress(port), acceptHandler);
+  }
+
+  @Override
+  public void acceptChannel(ServerChannel serverChannel, SocketChannel sc) {
+    nextWorker().acceptChannel(serverChannel, sc);
+  }
+
+  @Override
+  public void closeChannel(Hostable ch) {
+    if (ch instanceof Channel) {
+      ((Channel) ch).getHost().closeChannel(ch);
+    } else if (ch instanceof ServerChannel && ((ServerChannel) ch).getHost() != this) {
+      //sharded server channels are hosted by the workers
+      ((ServerChannel) ch).getHost().closeChannel(ch);
+    } else {
+      boss.closeChannel(ch);
+    }
+  }
+
+}
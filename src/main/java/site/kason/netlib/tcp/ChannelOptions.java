@@ -0,0 +1,197 @@
+package site.kason.netlib.tcp;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Socket options of channels.Options which are not set keep the default of the platform.
+ * The keep-alive tuning options are extended options of the JDK,they are ignored where unsupported.
+ *
+ * @author Kason Yang
+ */
+public class ChannelOptions {
+
+  private static final SocketOption<Integer> TCP_KEEPIDLE = findIntOption("TCP_KEEPIDLE");
+
+  private static final SocketOption<Integer> TCP_KEEPINTERVAL = findIntOption("TCP_KEEPINTERVAL");
+
+  private static final SocketOption<Integer> TCP_KEEPCOUNT = findIntOption("TCP_KEEPCOUNT");
+
+  private Boolean tcpNoDelay;
+
+  private Integer sendBufferSize;
+
+  private Integer receiveBufferSize;
+
+  private Boolean keepAlive;
+
+  private Integer linger;
+
+  private Integer keepAliveIdle;
+
+  private Integer keepAliveInterval;
+
+  private Integer keepAliveCount;
+
+  /**
+   * @return true if the keep-alive idle time,interval and count could be set on this platform
+   */
+  public static boolean isKeepAliveTuningSupported() {
+    return TCP_KEEPIDLE != null && TCP_KEEPINTERVAL != null && TCP_KEEPCOUNT != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static SocketOption<Integer> findIntOption(String name) {
+    try (SocketChannel sc = SocketChannel.open()) {
+      for (SocketOption<?> option : sc.supportedOptions()) {
+        if (name.equals(option.name()) && option.type() == Integer.class) {
+          return (SocketOption<Integer>) option;
+        }
+      }
+    } catch (IOException ex) {
+      //treated as unsupported
+    }
+    return null;
+  }
+
+  public Boolean getTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  /**
+   * set TCP_NODELAY,true disables Nagle's algorithm,which delays small writes until the previous ones are acknowledged
+   * @param tcpNoDelay the option value
+   */
+  public void setTcpNoDelay(Boolean tcpNoDelay) {
+    this.tcpNoDelay = tcpNoDelay;
+  }
+
+  public Integer getSendBufferSize() {
+    return sendBufferSize;
+  }
+
+  /**
+   * set SO_SNDBUF,the size of the socket send buffer of the kernel
+   * @param sendBufferSize the size in bytes
+   */
+  public void setSendBufferSize(Integer sendBufferSize) {
+    this.sendBufferSize = sendBufferSize;
+  }
+
+  public Integer getReceiveBufferSize() {
+    return receiveBufferSize;
+  }
+
+  /**
+   * set SO_RCVBUF,the size of the socket receive buffer of the kernel.
+   * Sizes above 64K need the TCP window scaling negotiated by the handshake,
+   * so the option is set on server channels before they are bound and on client channels before they connect.
+   * @param receiveBufferSize the size in bytes
+   */
+  public void setReceiveBufferSize(Integer receiveBufferSize) {
+    this.receiveBufferSize = receiveBufferSize;
+  }
+
+  public Boolean getKeepAlive() {
+    return keepAlive;
+  }
+
+  /**
+   * set SO_KEEPALIVE
+   * @param keepAlive the option value
+   */
+  public void setKeepAlive(Boolean keepAlive) {
+    this.keepAlive = keepAlive;
+  }
+
+  public Integer getLinger() {
+    return linger;
+  }
+
+  /**
+   * set SO_LINGER
+   * @param linger the linger time in seconds,0 to reset the connection on close,negative to disable
+   */
+  public void setLinger(Integer linger) {
+    this.linger = linger;
+  }
+
+  public Integer getKeepAliveIdle() {
+    return keepAliveIdle;
+  }
+
+  /**
+   * set TCP_KEEPIDLE where supported
+   * @param keepAliveIdle the idle seconds before the first probe
+   */
+  public void setKeepAliveIdle(Integer keepAliveIdle) {
+    this.keepAliveIdle = keepAliveIdle;
+  }
+
+  public Integer getKeepAliveInterval() {
+    return keepAliveInterval;
+  }
+
+  /**
+   * set TCP_KEEPINTERVAL where supported
+   * @param keepAliveInterval the seconds between probes
+   */
+  public void setKeepAliveInterval(Integer keepAliveInterval) {
+    this.keepAliveInterval = keepAliveInterval;
+  }
+
+  public Integer getKeepAliveCount() {
+    return keepAliveCount;
+  }
+
+  /**
+   * set TCP_KEEPCOUNT where supported
+   * @param keepAliveCount the count of unanswered probes before the connection is dropped
+   */
+  public void setKeepAliveCount(Integer keepAliveCount) {
+    this.keepAliveCount = keepAliveCount;
+  }
+
+  /**
+   * set the options which have been set to the socket
+   * @param sc the socket
+   * @throws IOException if failed to set an option
+   */
+  public void apply(SocketChannel sc) throws IOException {
+    setOption(sc, StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+    setOption(sc, StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+    setOption(sc, StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+    setOption(sc, StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+    setOption(sc, StandardSocketOptions.SO_LINGER, linger);
+    setOption(sc, TCP_KEEPIDLE, keepAliveIdle);
+    setOption(sc, TCP_KEEPINTERVAL, keepAliveInterval);
+    setOption(sc, TCP_KEEPCOUNT, keepAliveCount);
+  }
+
+  /**
+   * set the options which listening sockets pass to the accepted sockets,that is SO_RCVBUF only
+   * @param ssc the listening socket,which should not be bound yet
+   * @throws IOException if failed to set an option
+   */
+  public void applyToServer(NetworkChannel ssc) throws IOException {
+    setOption(ssc, StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+  }
+
+  private static <T> void setOption(NetworkChannel ch, SocketOption<T> option, T value) throws IOException {
+    if (option != null && value != null) {
+      ch.setOption(option, value);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ChannelOptions(" + "tcpNoDelay=" + tcpNoDelay + ", sendBufferSize=" + sendBufferSize
+        + ", receiveBufferSize=" + receiveBufferSize + ", keepAlive=" + keepAlive + ", linger=" + linger
+        + ", keepAliveIdle=" + keepAliveIdle + ", keepAliveInterval=" + keepAliveInterval
+        + ", keepAliveCount=" + keepAliveCount + ')';
+  }
+
+}
@@ -0,0 +1,23 @@
+package site.kason.netlib.tcp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A write task whose pending data is held in a nio buffer.
+ * If the channel has no encoder,several queued gathering tasks are written to the socket in one call
+ * without copying their data into the write buffer.
+ *
+ * @author Kason Yang
+ */
+public interface GatheringWriteTask extends WriteTask {
+
+  /**
+   * get the buffer holding the pending data.
+   * The channel moves the position of the buffer by the bytes written,
+   * and the task is finished once the buffer has no remaining bytes.
+   *
+   * @return the buffer of pending data
+   */
+  ByteBuffer getGatheringBuffer();
+
+}
@@ -0,0 +1,26 @@
+package site.kason.netlib.tcp;
+
+/**
+ * Thrown when the codecs of a channel are not initialized in the handshake timeout.
+ *
+ * @author Kason Yang
+ * @see Channel#setHandshakeTimeout(long, java.util.concurrent.TimeUnit)
+ */
+public class HandshakeTimeoutException extends RuntimeException {
+
+  public HandshakeTimeoutException() {
+  }
+
+  public HandshakeTimeoutException(String message) {
+    super(message);
+  }
+
+  public HandshakeTimeoutException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public HandshakeTimeoutException(Throwable cause) {
+    super(cause);
+  }
+
+}
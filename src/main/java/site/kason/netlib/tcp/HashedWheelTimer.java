@@ -0,0 +1,268 @@
+package site.kason.netlib.tcp;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A hashed wheel of timeouts owned by the event loop of a host.
+ * Every bucket is a doubly linked list,so adding and cancelling a timeout is O(1).
+ * Timeouts expire on the first tick after their deadline,so the precision is the tick duration.
+ * Except {@link #newTimeout(Channel, Runnable, long)} and {@link Entry#cancel()},
+ * all methods must be called in the event loop.
+ *
+ * @author Kason Yang
+ */
+class HashedWheelTimer {
+
+  static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+  private final ChannelHost host;
+
+  private final long tickNanos;
+
+  private final Bucket[] wheel;
+
+  private final int mask;
+
+  private final long startTime = System.nanoTime();
+
+  /**
+   * the count of ticks passed,the bucket of the current tick is {@code wheel[tick & mask]}
+   */
+  private long tick;
+
+  private int size;
+
+  HashedWheelTimer(ChannelHost host) {
+    this(host, DEFAULT_TICK_NANOS, DEFAULT_TICKS_PER_WHEEL);
+  }
+
+  /**
+   * @param host the host whose loop owns this timer
+   * @param tickNanos the duration of a tick
+   * @param ticksPerWheel the count of buckets,which is rounded up to a power of two
+   */
+  HashedWheelTimer(ChannelHost host, long tickNanos, int ticksPerWheel) {
+    if (tickNanos <= 0) {
+      throw new IllegalArgumentException("positive tick duration required.");
+    }
+    if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+      throw new IllegalArgumentException("ticks per wheel must be in (0, 2^30]:" + ticksPerWheel);
+    }
+    int n = Integer.highestOneBit(ticksPerWheel);
+    if (n < ticksPerWheel) {
+      n <<= 1;
+    }
+    this.host = host;
+    this.tickNanos = tickNanos;
+    this.wheel = new Bucket[n];
+    for (int i = 0; i < n; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = n - 1;
+  }
+
+  /**
+   * create a timeout without adding it
+   *
+   * @param channel the channel whose exception handler handles the exceptions of the task,or null
+   * @param task the task
+   * @param delayNanos the delay
+   * @return the timeout
+   */
+  Entry newTimeout(Channel channel, Runnable task, long delayNanos) {
+    long deadline = System.nanoTime() - startTime + Math.max(0, delayNanos);
+    //guard against overflow
+    if (delayNanos > 0 && deadline < 0) {
+      deadline = Long.MAX_VALUE;
+    }
+    return new Entry(this, channel, task, deadline);
+  }
+
+  void add(Entry e) {
+    if (e.state != Entry.ST_INIT || e.bucket != null) {
+      return;
+    }
+    long calculated = e.deadline / tickNanos;
+    e.remainingRounds = (calculated - tick) / wheel.length;
+    Bucket b = wheel[(int) (Math.max(calculated, tick) & mask)];
+    b.add(e);
+    size++;
+  }
+
+  void remove(Entry e) {
+    Bucket b = e.bucket;
+    if (b != null) {
+      b.remove(e);
+      size--;
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @param now the current time from {@link System#nanoTime()}
+   * @return the nanos until the end of the next tick having timeouts,or -1 if there is no timeout
+   */
+  long nanosToNextTick(long now) {
+    if (size == 0) {
+      return -1;
+    }
+    long elapsed = now - startTime;
+    for (int i = 0; i < wheel.length; i++) {
+      if (wheel[(int) ((tick + i) & mask)].head != null) {
+        return Math.max(0, (tick + i + 1) * tickNanos - elapsed);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * move the wheel to the current time and detach the expired timeouts
+   *
+   * @param now the current time from {@link System#nanoTime()}
+   * @param expired the list which the expired timeouts are added to
+   */
+  void expire(long now, ArrayList<Entry> expired) {
+    long elapsed = now - startTime;
+    while ((tick + 1) * tickNanos <= elapsed) {
+      if (size > 0) {
+        Bucket b = wheel[(int) (tick & mask)];
+        Entry e = b.head;
+        while (e != null) {
+          Entry next = e.next;
+          if (e.remainingRounds <= 0) {
+            b.remove(e);
+            size--;
+            expired.add(e);
+          } else {
+            e.remainingRounds--;
+          }
+          e = next;
+        }
+      }
+      tick++;
+    }
+  }
+
+  private void cancelled(Entry e) {
+    if (host.inEventLoop()) {
+      remove(e);
+    } else {
+      host.execute(() -> remove(e));
+    }
+  }
+
+  static class Entry implements Timeout {
+
+    private static final int ST_INIT = 0;
+
+    private static final int ST_CANCELLED = 1;
+
+    private static final int ST_EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<Entry> STATE_UPDATER
+        = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+    private final HashedWheelTimer timer;
+
+    final Channel channel;
+
+    final Runnable task;
+
+    /**
+     * nanos since the start of the timer
+     */
+    private final long deadline;
+
+    private long remainingRounds;
+
+    private volatile int state = ST_INIT;
+
+    private Bucket bucket;
+
+    private Entry prev;
+
+    private Entry next;
+
+    private Entry(HashedWheelTimer timer, Channel channel, Runnable task, long deadline) {
+      this.timer = timer;
+      this.channel = channel;
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * mark the timeout expired
+     *
+     * @return false if it has been cancelled
+     */
+    boolean expire() {
+      return STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED);
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+        return false;
+      }
+      timer.cancelled(this);
+      return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return state == ST_CANCELLED;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return state == ST_EXPIRED;
+    }
+
+  }
+
+  private static class Bucket {
+
+    private Entry head;
+
+    private Entry tail;
+
+    void add(Entry e) {
+      e.bucket = this;
+      if (head == null) {
+        head = tail = e;
+      } else {
+        tail.next = e;
+        e.prev = tail;
+        tail = e;
+      }
+    }
+
+    void remove(Entry e) {
+      Entry next = e.next;
+      if (e.prev != null) {
+        e.prev.next = next;
+      }
+      if (next != null) {
+        next.prev = e.prev;
+      }
+      if (e == head) {
+        head = next;
+      }
+      if (e == tail) {
+        tail = e.prev;
+      }
+      e.prev = null;
+      e.next = null;
+      e.bucket = null;
+    }
+
+  }
+
+}
@@ -2,9 +2,50 @@ package site.kason.netlib.tcp;
 
 import java.net.SocketAddress;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
 
 public interface Host {
 
+    /**
+     * check whether the caller is running in the event loop of this host
+     * @return true if the caller is the loop thread
+     */
+    boolean inEventLoop();
+
+    /**
+     * run the task in the event loop of this host
+     * @param task the task to run
+     */
+    void execute(Runnable task);
+
+    /**
+     * run the task in the event loop of the channel,
+     * exceptions thrown by the task are handled as exceptions of the channel
+     * @param ch the channel
+     * @param task the task to run
+     */
+    void execute(Channel ch, Runnable task);
+
+    /**
+     * run the task in the event loop of this host after the delay
+     * @param task the task to run
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @return the timeout which could cancel the task
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit);
+
+    /**
+     * run the task in the event loop of the channel after the delay,
+     * exceptions thrown by the task are handled as exceptions of the channel
+     * @param ch the channel
+     * @param task the task to run
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @return the timeout which could cancel the task
+     */
+    Timeout schedule(Channel ch, Runnable task, long delay, TimeUnit unit);
+
     void continueWrite(Channel ch);
 
     void pauseWrite(Channel ch);
@@ -20,6 +61,13 @@ public interface Host {
     Channel createChannel(SocketChannel sc);
     
     ServerChannel createServerChannel(SocketAddress endpoint, AcceptHandler acceptHandler);
+
+    /**
+     * host a socket channel accepted by the server channel and notify its accept handler
+     * @param serverChannel the server channel which accepted the connection
+     * @param sc the accepted socket channel
+     */
+    void acceptChannel(ServerChannel serverChannel, SocketChannel sc);
     
     void closeChannel(Hostable ch);
     
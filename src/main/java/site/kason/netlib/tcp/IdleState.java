@@ -0,0 +1,25 @@
+package site.kason.netlib.tcp;
+
+/**
+ * The kinds of idleness of a channel.
+ *
+ * @author Kason Yang
+ */
+public enum IdleState {
+
+  /**
+   * nothing has been read for a while
+   */
+  READER_IDLE,
+
+  /**
+   * nothing has been written for a while
+   */
+  WRITER_IDLE,
+
+  /**
+   * nothing has been read or written for a while
+   */
+  ALL_IDLE
+
+}
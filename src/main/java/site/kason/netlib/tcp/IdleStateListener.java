@@ -0,0 +1,18 @@
+package site.kason.netlib.tcp;
+
+/**
+ * Listens the idleness of a channel.
+ *
+ * @author Kason Yang
+ * @see Channel#setIdleTimeout(long, long, long, java.util.concurrent.TimeUnit)
+ */
+public interface IdleStateListener {
+
+    /**
+     * called in the event loop of the channel every time the channel stays idle for the timeout
+     * @param ch the channel
+     * @param state the kind of idleness
+     */
+    void onChannelIdle(Channel ch, IdleState state);
+
+}
@@ -0,0 +1,60 @@
+package site.kason.netlib.tcp;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded lock-free queue for many producers and a single consumer.
+ * Producers only swap the tail, so {@link #offer(Object)} never blocks;
+ * {@link #poll()} and {@link #isEmpty()} must only be called by the consumer thread.
+ *
+ * @author Kason Yang
+ */
+class MpscQueue<E> {
+
+  private static final class Node<E> {
+
+    E value;
+
+    volatile Node<E> next;
+
+    Node(E value) {
+      this.value = value;
+    }
+
+  }
+
+  private final AtomicReference<Node<E>> tail;
+
+  private Node<E> head;
+
+  MpscQueue() {
+    Node<E> stub = new Node<>(null);
+    head = stub;
+    tail = new AtomicReference<>(stub);
+  }
+
+  public void offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    Node<E> n = new Node<>(e);
+    Node<E> prev = tail.getAndSet(n);
+    prev.next = n;
+  }
+
+  public E poll() {
+    Node<E> next = head.next;
+    if (next == null) {
+      return null;
+    }
+    E value = next.value;
+    next.value = null;
+    head = next;
+    return value;
+  }
+
+  public boolean isEmpty() {
+    return head.next == null;
+  }
+
+}
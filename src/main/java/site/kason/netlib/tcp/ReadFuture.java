@@ -0,0 +1,48 @@
+package site.kason.netlib.tcp;
+
+import site.kason.netlib.io.IOBuffer;
+
+/**
+ * A read task whose result is delivered by itself as a future,see {@link Channel#readAsync(ReadFuture)}.
+ * Subclasses handle the read data in {@link #handleData(Channel, IOBuffer)} and complete the future by {@link #succeed(Object)}.
+ * A future completed by other means,such as cancelled,leaves the read data to the next task.
+ *
+ * @author Kason Yang
+ */
+public abstract class ReadFuture<T> extends ChannelFuture<T> implements ReadTask {
+
+  private Channel channel;
+
+  @Override
+  void start(Channel channel) {
+    this.channel = channel;
+    channel.read(this);
+  }
+
+  @Override
+  public final boolean handleRead(Channel channel, IOBuffer buffer) {
+    if (isDone()) {
+      channel.finishFuture(this);
+      return true;
+    }
+    return handleData(channel, buffer);
+  }
+
+  /**
+   * @param channel the channel
+   * @param buffer the read data
+   * @return true if the future is completed
+   */
+  protected abstract boolean handleData(Channel channel, IOBuffer buffer);
+
+  /**
+   * complete the future in the event loop,the dependent stages attached before run in the event loop too
+   *
+   * @param value the result
+   */
+  protected final void succeed(T value) {
+    channel.finishFuture(this);
+    complete(value);
+  }
+
+}
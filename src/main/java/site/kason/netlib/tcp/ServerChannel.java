@@ -3,18 +3,26 @@ package site.kason.netlib.tcp;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
+import java.net.SocketOption;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 
 public class ServerChannel implements Hostable {
 
+  /**
+   * SO_REUSEPORT is looked up by name,it is a standard option since Java 9 and unsupported on some platforms
+   */
+  private static final SocketOption<Boolean> SO_REUSEPORT = findReusePortOption();
+
   private ServerSocketChannel ssc;
 
   private final Host host;
 
   private AcceptHandler acceptHandler;
 
+  private ChannelOptions channelOptions;
+
   public static ServerChannel create(Host host, AcceptHandler channelHandler) throws IOException {
     ServerSocketChannel ssc = ServerSocketChannel.open();
     ssc.configureBlocking(false);
@@ -28,13 +36,81 @@ public class ServerChannel implements Hostable {
     this.host = host;
   }
 
+  /**
+   * @return true if several server channels could bind the same address with {@link #setReusePort(boolean)}
+   */
+  public static boolean isReusePortSupported() {
+    return SO_REUSEPORT != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static SocketOption<Boolean> findReusePortOption() {
+    try (ServerSocketChannel ssc = ServerSocketChannel.open()) {
+      for (SocketOption<?> option : ssc.supportedOptions()) {
+        if ("SO_REUSEPORT".equals(option.name()) && option.type() == Boolean.class) {
+          return (SocketOption<Boolean>) option;
+        }
+      }
+    } catch (IOException ex) {
+      //treated as unsupported
+    }
+    return null;
+  }
+
+  public Host getHost() {
+    return host;
+  }
+
   public ServerSocketChannel serverSocketChannel() {
     return ssc;
   }
 
+  public ChannelOptions getChannelOptions() {
+    return channelOptions;
+  }
+
+  /**
+   * set the socket options of the channels accepted later.
+   * The receive buffer size is also set to this server channel if it is not bound yet,
+   * since larger sizes than 64K must be set before the handshake.
+   *
+   * @param channelOptions the options,or null to keep the defaults of the platform
+   */
+  public void setChannelOptions(ChannelOptions channelOptions) {
+    this.channelOptions = channelOptions;
+  }
+
+  /**
+   * set SO_REUSEPORT,which must be set before binding.
+   * The kernel then spreads the connections to an address over all server channels bound to it.
+   *
+   * @param reusePort true to enable
+   * @throws IOException if failed to set the option
+   * @throws UnsupportedOperationException if SO_REUSEPORT is not supported
+   * @see #isReusePortSupported()
+   */
+  public void setReusePort(boolean reusePort) throws IOException {
+    if (SO_REUSEPORT == null) {
+      throw new UnsupportedOperationException("SO_REUSEPORT is not supported");
+    }
+    ssc.setOption(SO_REUSEPORT, reusePort);
+  }
+
   public void bind(SocketAddress endpoint) throws IOException {
+    bind(endpoint, 0);
+  }
+
+  /**
+   * @param endpoint the address to bind
+   * @param backlog the max count of pending connections,0 to use the default of the platform
+   * @throws IOException if failed to bind
+   */
+  public void bind(SocketAddress endpoint, int backlog) throws IOException {
+    if (channelOptions != null) {
+      channelOptions.applyToServer(ssc);
+    }
     ServerSocket socket = ssc.socket();
-    socket.bind(endpoint);
+    socket.bind(endpoint, backlog);
   }
 
   @Override
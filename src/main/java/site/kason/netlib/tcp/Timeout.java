@@ -0,0 +1,23 @@
+package site.kason.netlib.tcp;
+
+/**
+ * A task scheduled by {@link Host#schedule(Runnable, long, java.util.concurrent.TimeUnit)}.
+ *
+ * @author Kason Yang
+ */
+public interface Timeout {
+
+    /**
+     * cancel the task if it has not run yet.It is safe to call this method from any thread.
+     * @return true if the task is cancelled by this call
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    /**
+     * @return true if the task has run or is running
+     */
+    boolean isExpired();
+
+}
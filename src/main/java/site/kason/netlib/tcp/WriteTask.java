@@ -22,4 +22,13 @@ public interface WriteTask {
 
   }
 
+  /**
+   * The bytes this task writes,which are counted as pending write bytes of the channel until the task is written.
+   * It must not change after the task is queued.
+   * @return the size of the task,or 0 if unknown
+   */
+  default long getSize() {
+    return 0;
+  }
+
 }
@@ -0,0 +1,23 @@
+package site.kason.netlib.tcp;
+
+/**
+ * Listens the pending write bytes of a channel crossing its water marks.
+ * Both methods are called in the event loop of the channel and the calls always alternate.
+ *
+ * @author Kason Yang
+ */
+public interface WriteWatermarkListener {
+
+    /**
+     * called when the pending write bytes exceed the high water mark
+     * @param ch the channel
+     */
+    void onWriteSaturated(Channel ch);
+
+    /**
+     * called when the pending write bytes of a saturated channel fall below the low water mark
+     * @param ch the channel
+     */
+    void onWriteDrained(Channel ch);
+
+}
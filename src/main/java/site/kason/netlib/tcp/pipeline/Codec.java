@@ -17,4 +17,11 @@ public interface Codec {
   @Nullable
   Processor getDecoder();
 
+  /**
+   * called when the channel is closed to release the resources held by the codec
+   */
+  default void release() {
+
+  }
+
 }
@@ -1,8 +1,14 @@
 package site.kason.netlib.tcp.pipeline;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.io.IOBufferAllocator;
+import site.kason.netlib.io.UnpooledIOBufferAllocator;
+import site.kason.netlib.metrics.MetricsListener;
+import site.kason.netlib.tcp.Channel;
 
 /**
  *
@@ -20,8 +26,46 @@ public class Pipeline {
 
   private final List<IOBuffer> processorOutBuffers = new ArrayList();
 
+  private final IOBufferAllocator allocator;
+
+  private final boolean directIn;
+
+  private final boolean directOut;
+
+  private boolean released = false;
+
+  private MetricsListener metricsListener = MetricsListener.NOOP;
+
+  private Channel channel;
+
   public Pipeline() {
-    inBuffer = outBuffer = IOBuffer.create(4096);
+    this(UnpooledIOBufferAllocator.INSTANCE);
+  }
+
+  public Pipeline(IOBufferAllocator allocator) {
+    this(allocator, false, false);
+  }
+
+  /**
+   * @param allocator the allocator of buffers
+   * @param directIn whether the in buffer should be direct
+   * @param directOut whether the out buffer should be direct
+   */
+  public Pipeline(IOBufferAllocator allocator, boolean directIn, boolean directOut) {
+    this.allocator = allocator;
+    this.directIn = directIn;
+    this.directOut = directOut;
+    inBuffer = outBuffer = this.createBuffer(4096, directIn || directOut);
+  }
+
+  /**
+   * report the processing of every processor to the listener
+   * @param metricsListener the listener
+   * @param channel the channel reported with the metrics
+   */
+  public void setMetricsListener(MetricsListener metricsListener, Channel channel) {
+    this.metricsListener = metricsListener;
+    this.channel = channel;
   }
 
   public IOBuffer getInBuffer() {
@@ -42,8 +86,17 @@ public class Pipeline {
         IOBuffer out = processorOutBuffers.get(i);
         out.compact();
         int oldOutWritePos = out.getWritePosition();
-        processors.get(i).process(in, out);
+        Processor p = processors.get(i);
+        int oldInSize = in.getReadableSize();
+        long startTime = metricsListener == MetricsListener.NOOP ? 0 : System.nanoTime();
+        p.process(in, out);
         int written = out.getWritePosition()-oldOutWritePos;
+        if (metricsListener != MetricsListener.NOOP) {
+          int consumed = oldInSize - in.getReadableSize();
+          if (consumed > 0 || written > 0) {
+            metricsListener.onProcess(channel, p, consumed, written, System.nanoTime() - startTime);
+          }
+        }
         if(written>0){
           produced = true;
         }
@@ -51,6 +104,36 @@ public class Pipeline {
     }
   }
   
+  /**
+   * replace the in buffer with one of about {@code size} bytes,keeping its readable bytes.
+   * The size is raised to the min in buffer size of the first processor and the readable bytes.
+   * The buffer is kept if its capacity is already in [size, size * 2).
+   * @param size the preferred size
+   * @return true if the buffer is replaced
+   */
+  public boolean resizeInBuffer(int size) {
+    int required = Math.max(size, inBuffer.getReadableSize());
+    if (!processors.isEmpty()) {
+      required = Math.max(required, processors.get(0).getMinInBufferSize());
+    }
+    int capacity = inBuffer.capacity();
+    if (required <= capacity && required > capacity / 2) {
+      return false;
+    }
+    IOBuffer oldInBuffer = inBuffer;
+    IOBuffer newInBuffer = oldInBuffer.isDirect() ? allocator.allocateDirect(required) : allocator.allocate(required);
+    newInBuffer.push(oldInBuffer);
+    if (outBuffer == oldInBuffer) {
+      outBuffer = newInBuffer;
+    }
+    if (!processorInBuffers.isEmpty()) {
+      processorInBuffers.set(0, newInBuffer);
+    }
+    inBuffer = newInBuffer;
+    oldInBuffer.release();
+    return true;
+  }
+
   public int getProcessorCount(){
     return this.processors.size();
   }
@@ -60,6 +143,37 @@ public class Pipeline {
   }
   
   public void addProcessor(int index,Processor... ps) {
+    Set<IOBuffer> oldBuffers = this.getBuffers();
+    this.addProcessor0(index, ps);
+    oldBuffers.removeAll(this.getBuffers());
+    for (IOBuffer b : oldBuffers) {
+      b.release();
+    }
+  }
+
+  /**
+   * release all buffers of this pipeline.The pipeline must not be used after released.
+   */
+  public void release() {
+    if (released) {
+      return;
+    }
+    released = true;
+    for (IOBuffer b : this.getBuffers()) {
+      b.release();
+    }
+  }
+
+  private Set<IOBuffer> getBuffers() {
+    Set<IOBuffer> buffers = new HashSet<>();
+    buffers.add(inBuffer);
+    buffers.add(outBuffer);
+    buffers.addAll(processorInBuffers);
+    buffers.addAll(processorOutBuffers);
+    return buffers;
+  }
+
+  private void addProcessor0(int index,Processor... ps) {
     int psLen = ps.length;
     if (psLen <= 0) {
       return;
@@ -69,9 +183,9 @@ public class Pipeline {
       int inSizeRequired = ps[0].getMinInBufferSize();
       int preOutIndex = index-1;
       IOBuffer preOutBuffer = preOutIndex>=0 ? this.processorOutBuffers.get(preOutIndex) : null;
-      if(preOutBuffer==null || preOutBuffer.array().length<inSizeRequired){
+      if(preOutBuffer==null || preOutBuffer.capacity()<inSizeRequired){
         if(preOutBuffer==null){
-          preOutBuffer = this.inBuffer = this.createBuffer(inSizeRequired);
+          preOutBuffer = this.inBuffer = this.createBuffer(inSizeRequired, directIn);
         }else{
           preOutBuffer = this.createBuffer(inSizeRequired);
           this.processorOutBuffers.set(preOutIndex, preOutBuffer);
@@ -90,11 +204,11 @@ public class Pipeline {
       int outIndex = index+ps.length-1;
       boolean isLast = processors.size()-1==outIndex;
       if(isLast){
-        this.outBuffer = this.createBuffer(minOutBufferSize);
+        this.outBuffer = this.createBuffer(minOutBufferSize, directOut);
         this.processorOutBuffers.add(outBuffer);
       }else{
         IOBuffer nextIn = this.processorInBuffers.get(outIndex+1);
-        if(nextIn.array().length<minOutBufferSize){
+        if(nextIn.capacity()<minOutBufferSize){
           this.processorInBuffers.remove(outIndex+1);
           nextIn = this.createBuffer(minOutBufferSize);
           this.processorInBuffers.add(outIndex+1,nextIn);
@@ -103,8 +217,10 @@ public class Pipeline {
       }
     } else {
       int inSizeRequired = ps[0].getMinInBufferSize();
-      if (inSizeRequired > this.inBuffer.array().length) {
-        inBuffer = this.createBuffer(inSizeRequired);
+      if (inSizeRequired > this.inBuffer.capacity() || this.inBuffer.isDirect() != directIn) {
+        IOBuffer oldInBuffer = inBuffer;
+        inBuffer = this.createBuffer(inSizeRequired, directIn);
+        inBuffer.push(oldInBuffer);
       }
       this.processorInBuffers.add(inBuffer);
       this.processors.add(ps[0]);
@@ -115,17 +231,18 @@ public class Pipeline {
         this.processorOutBuffers.add(ib);
         this.processors.add(ps[i]);
       }
-      outBuffer =this.createBuffer(ps[psLen - 1].getMinOutBufferSize());
+      outBuffer =this.createBuffer(ps[psLen - 1].getMinOutBufferSize(), directOut);
       this.processorOutBuffers.add(outBuffer);
     }
   }
   
   private IOBuffer createBuffer(int minSize){
-    if(minSize>4096){
-      return IOBuffer.create(minSize);
-    }else{
-      return IOBuffer.create(4096);
-    }
+    return createBuffer(minSize, false);
+  }
+
+  private IOBuffer createBuffer(int minSize, boolean direct){
+    int size = Math.max(minSize, 4096);
+    return direct ? allocator.allocateDirect(size) : allocator.allocate(size);
   }
 
 }
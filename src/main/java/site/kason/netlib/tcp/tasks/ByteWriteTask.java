@@ -1,40 +1,45 @@
 package site.kason.netlib.tcp.tasks;
 
+import java.nio.ByteBuffer;
 import site.kason.netlib.io.IOBuffer;
 import site.kason.netlib.tcp.Channel;
-import site.kason.netlib.tcp.WriteTask;
+import site.kason.netlib.tcp.GatheringWriteTask;
 
 /**
  *
  * @author Kason Yang
  */
-public class ByteWriteTask implements WriteTask {
+public class ByteWriteTask implements GatheringWriteTask {
 
-  private final byte[] data;
+  private final ByteBuffer data;
 
-  private final int lastOffset;
-
-  private int offset;
+  private final int size;
 
   public ByteWriteTask(byte[] data) {
     this(data,0,data.length);
   }
 
   public ByteWriteTask(byte[] data, int offset, int length) {
-    this.data = data;
-    this.offset = offset;
-    this.lastOffset = offset + length - 1;
+    this.data = ByteBuffer.wrap(data, offset, length);
+    this.size = length;
   }
 
   @Override
   public boolean handleWrite(Channel ch,IOBuffer buffer) {
-    int remaining = lastOffset - offset + 1;
-    if (remaining > 0) {
-      int maxSize = Math.min(remaining, buffer.getWritableSize());
-      buffer.push(data, offset, maxSize);
-      offset+=maxSize;
+    if (data.hasRemaining()) {
+      buffer.push(data);
     }
-    return offset > lastOffset;
+    return !data.hasRemaining();
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+  @Override
+  public ByteBuffer getGatheringBuffer() {
+    return data;
   }
 
 }
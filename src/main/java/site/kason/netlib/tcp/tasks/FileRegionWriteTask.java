@@ -0,0 +1,74 @@
+package site.kason.netlib.tcp.tasks;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import lombok.SneakyThrows;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.WriteTask;
+
+/**
+ * A task writing a region of a file.
+ * If the channel has no encoder,the region is transferred to the socket by {@link Channel#transferFrom(FileChannel, long, long)},
+ * otherwise it is read into the write buffer chunk by chunk.
+ * The file channel is not closed by the task.
+ *
+ * @author Kason Yang
+ */
+public class FileRegionWriteTask implements WriteTask {
+
+  private final FileChannel file;
+
+  private final long endPosition;
+
+  private final long size;
+
+  private long position;
+
+  public FileRegionWriteTask(FileChannel file) throws IOException {
+    this(file, 0, file.size());
+  }
+
+  public FileRegionWriteTask(FileChannel file, long position, long count) {
+    this.file = file;
+    this.position = position;
+    this.endPosition = position + count;
+    this.size = count;
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+  @SneakyThrows
+  @Override
+  public boolean handleWrite(Channel channel, IOBuffer buffer) {
+    long remaining = endPosition - position;
+    if (remaining <= 0) {
+      return true;
+    }
+    if (!channel.hasEncoder() && buffer.getReadableSize() == 0) {
+      position += channel.transferFrom(file, position, remaining);
+    } else {
+      ByteBuffer dest = buffer.writableBuffer();
+      if (dest.remaining() > remaining) {
+        dest.limit(dest.position() + (int) remaining);
+      }
+      int len = file.read(dest, position);
+      if (len < 0) {
+        throw new EOFException("file ends at " + position + " but region ends at " + endPosition);
+      }
+      buffer.moveWritePosition(len);
+      position += len;
+    }
+    return position >= endPosition;
+  }
+
+  public long getRemaining() {
+    return endPosition - position;
+  }
+
+}
@@ -3,22 +3,68 @@ package test.site.kason.netlib;
 import org.junit.Assert;
 import org.junit.Test;
 import site.kason.netlib.codec.DeflateCodec;
+import site.kason.netlib.codec.DelimiterFrameCodec;
+import site.kason.netlib.codec.LengthFieldFrameCodec;
+import site.kason.netlib.codec.LZ4Codec;
+import site.kason.netlib.flow.ChannelPublisher;
+import site.kason.netlib.flow.ChannelSubscriber;
 import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.io.IOBufferAllocator;
+import site.kason.netlib.metrics.ChannelHostMetrics;
+import site.kason.netlib.metrics.MetricsListener;
 import site.kason.netlib.ssl.SSLCodec;
 import site.kason.netlib.ssl.SSLContextUtil;
 import site.kason.netlib.tcp.*;
 import site.kason.netlib.tcp.pipeline.Codec;
+import site.kason.netlib.tcp.pipeline.CodecInitProgress;
+import site.kason.netlib.tcp.pipeline.Processor;
 import site.kason.netlib.tcp.tasks.ByteWriteTask;
+import site.kason.netlib.tcp.tasks.FileRegionWriteTask;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class ChannelHostTest {
@@ -57,9 +103,1209 @@ public class ChannelHostTest {
     );
   }
 
+  @Test
+  public void testLZ4() throws Exception{
+    CodecFactory cf = ch -> Collections.singletonList((Codec) new LZ4Codec());
+    doTest(9012,cf,cf);
+  }
+
+  @Test
+  public void testSSLWithDelegatedTaskExecutor() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    AtomicInteger delegated = new AtomicInteger();
+    Executor executor = task -> {
+      delegated.incrementAndGet();
+      pool.execute(task);
+    };
+    try {
+      doTest(
+          9021,
+          ch -> Collections.singletonList(createSSLCodec(false, executor)),
+          ch -> Collections.singletonList(createSSLCodec(true, executor))
+      );
+    } finally {
+      pool.shutdown();
+    }
+    Assert.assertTrue(delegated.get() > 0);
+  }
+
+  @Test(timeout = 10000)
+  public void testSSLWithRejectingExecutor() throws Exception {
+    AtomicInteger rejected = new AtomicInteger();
+    Executor executor = task -> {
+      rejected.incrementAndGet();
+      throw new RejectedExecutionException();
+    };
+    doTest(
+        9034,
+        ch -> Collections.singletonList(createSSLCodec(false, executor)),
+        ch -> Collections.singletonList(createSSLCodec(true, executor))
+    );
+    Assert.assertTrue(rejected.get() > 0);
+  }
+
+  @Test(timeout = 10000)
+  public void testPostHandshakeTasksInExecutor() throws Exception {
+    final SSLContext context = SSLContextUtil.createFromKeyStore(new File("sslclientkeys"), "net-lib", SSLContextUtil.TLS);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final AtomicBoolean handshaked = new AtomicBoolean();
+    final AtomicInteger postHandshakeTasks = new AtomicInteger();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final ChannelHost host = ChannelHost.create();
+    host.setExceptionHandler((ch, ex) -> failure.compareAndSet(null, ex));
+    host.setMetricsListener(new MetricsListener() {
+      @Override
+      public void onHandshake(Channel channel, long nanos, boolean resumed) {
+        handshaked.set(true);
+      }
+    });
+    SocketAddress addr = new InetSocketAddress("127.0.0.1", 9042);
+    host.createServerChannel(addr, ch -> {
+      //the tasks of the renegotiation run after the handshake
+      SSLCodec codec = new SSLCodec(context, false, task -> executor.execute(() -> {
+        if (handshaked.get()) {
+          postHandshakeTasks.incrementAndGet();
+        }
+        task.run();
+      }));
+      codec.setEnabledProtocols(SSLContextUtil.TLS_1_2);
+      ch.addCodec(codec);
+      ch.read((self, buffer) -> {
+        byte[] receivedData = new byte[buffer.getReadableSize()];
+        buffer.poll(receivedData);
+        self.write(new ByteWriteTask(receivedData));
+        return false;
+      });
+    });
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try (SSLSocket client = (SSLSocket) context.getSocketFactory().createSocket("127.0.0.1", 9042)) {
+      client.setEnabledProtocols(new String[]{SSLContextUtil.TLS_1_2});
+      client.setSoTimeout(5000);
+      InputStream in = client.getInputStream();
+      OutputStream out = client.getOutputStream();
+      out.write(1);
+      assertEquals(1, in.read());
+      //renegotiate
+      client.startHandshake();
+      out.write(2);
+      assertEquals(2, in.read());
+      Assert.assertNull(failure.get());
+      assertTrue(postHandshakeTasks.get() > 0);
+    } finally {
+      host.stopListen();
+      loop.join();
+      executor.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSSLSessionResumption() throws Exception {
+    doSSLSessionResumptionTest(9022, "sslclientkeys", SSLContextUtil.TLS_1_2);
+  }
+
+  @Test(timeout = 10000)
+  public void testTLS13SessionResumption() throws Exception {
+    //tickets of TLS 1.3 require a RSA or EC key
+    doSSLSessionResumptionTest(9039, "sslrsakeys", SSLContextUtil.TLS_1_3);
+  }
+
+  private void doSSLSessionResumptionTest(int port, String keyStore, String protocol) throws Exception {
+    final SSLContext serverContext = SSLContextUtil.createFromKeyStore(new File(keyStore), "net-lib", SSLContextUtil.TLS);
+    final SSLContext clientContext = SSLContextUtil.createFromKeyStore(new File(keyStore), "net-lib", SSLContextUtil.TLS);
+    SSLContextUtil.setSessionCache(serverContext, 100, 60);
+    final ChannelHost host = ChannelHost.create();
+    final ChannelHostMetrics metrics = new ChannelHostMetrics();
+    host.setMetricsListener(metrics);
+    host.setExceptionHandler((ch, ex) -> {
+      throw new RuntimeException(ex);
+    });
+    final SocketAddress addr = new InetSocketAddress("127.0.0.1", port);
+    final List<Boolean> clientResumed = new ArrayList<>();
+    final Runnable[] connect = new Runnable[1];
+    connect[0] = () -> {
+      Channel client = host.createChannel();
+      client.connect(addr);
+      SSLCodec codec = new SSLCodec(clientContext, true);
+      codec.setEnabledProtocols(protocol);
+      client.addCodec(codec);
+      client.write(new ByteWriteTask(new byte[]{1}));
+      //the echo follows the session ticket of TLS 1.3,so the ticket is received before reconnecting
+      client.read((self, buffer) -> {
+        buffer.moveReadPosition(buffer.getReadableSize());
+        clientResumed.add(codec.isSessionResumed());
+        self.close();
+        if (clientResumed.size() < 2) {
+          connect[0].run();
+        } else {
+          host.stopListen();
+        }
+        return true;
+      });
+    };
+    host.createServerChannel(addr, ch -> {
+      SSLCodec codec = new SSLCodec(serverContext, false);
+      codec.setEnabledProtocols(protocol);
+      ch.addCodec(codec);
+      ch.read((self, buffer) -> {
+        buffer.moveReadPosition(buffer.getReadableSize());
+        self.write(new ByteWriteTask(new byte[]{1}));
+        return true;
+      });
+    });
+    connect[0].run();
+    host.listen();
+    Assert.assertEquals(Arrays.asList(false, true), clientResumed);
+    Assert.assertEquals(4, metrics.getHandshakeCount());
+    Assert.assertEquals(2, metrics.getResumedHandshakeCount());
+    Assert.assertEquals(2, metrics.getFullHandshakeCount());
+  }
+
+  @Test
+  public void testLZ4AndSSL() throws Exception{
+    doTest(
+        9013,
+        ch -> Arrays.asList(createSSLCodec(false),new LZ4Codec(4096, false)),
+        ch -> Arrays.asList(createSSLCodec(true),new LZ4Codec(4096, false))
+    );
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    ChannelHostMetrics metrics = new ChannelHostMetrics();
+    doTest(
+        9014,
+        host -> host.setMetricsListener(metrics),
+        ch -> Arrays.asList(createSSLCodec(false),new DeflateCodec()),
+        ch -> Arrays.asList(createSSLCodec(true),new DeflateCodec())
+    );
+    assertTrue(metrics.getLoopIterations() > 0);
+    assertTrue(metrics.getReadCalls() > 0);
+    assertTrue(metrics.getWriteCalls() > 0);
+    assertEquals(metrics.getBytesRead(), metrics.getBytesWritten());
+    assertEquals(2, metrics.getHandshakeCount());
+    assertTrue(metrics.getStageBytesIn().get("DeflateEncodeProcessor") >= 22);
+    assertTrue(metrics.getStageBytesOut().get("DeflateDecodeProcessor") >= 22);
+  }
+
+  @Test
+  public void testDirectSocketBuffer() throws Exception {
+    doTest(9006, true, null, null);
+  }
+
+  @Test
+  public void testDirectSocketBufferWithDeflateAndSSL() throws Exception {
+    doTest(
+        9007,
+        true,
+        ch -> Arrays.asList(createSSLCodec(false),new DeflateCodec()),
+        ch -> Arrays.asList(createSSLCodec(true),new DeflateCodec())
+    );
+  }
+
+  @Test(timeout = 10000)
+  public void testGatheringWrite() throws Exception {
+    final int messageCount = 500;
+    final ChannelHost host = ChannelHost.create();
+    final AtomicInteger received = new AtomicInteger();
+    final AtomicInteger written = new AtomicInteger();
+    final AtomicInteger socketWrites = new AtomicInteger();
+    final AtomicLong maxWriteBytes = new AtomicLong();
+    SocketAddress addr = new InetSocketAddress(9008);
+    host.setExceptionHandler((ch, ex) -> {
+      throw new RuntimeException(ex);
+    });
+    host.setMetricsListener(new MetricsListener() {
+      @Override
+      public void onSocketWrite(Channel channel, long bytes) {
+        socketWrites.incrementAndGet();
+        maxWriteBytes.accumulateAndGet(bytes, Math::max);
+      }
+    });
+    host.createServerChannel(addr, ch -> ch.read((self, buffer) -> {
+      while (buffer.getReadableSize() > 0) {
+        byte[] b = new byte[1];
+        buffer.poll(b);
+        assertEquals((byte) received.getAndIncrement(), b[0]);
+      }
+      if (received.get() == messageCount * 2) {
+        host.stopListen();
+        return true;
+      }
+      return false;
+    }));
+    Channel client = host.createChannel();
+    client.connect(addr);
+    for (int i = 0; i < messageCount; i++) {
+      client.write(new ByteWriteTask(new byte[]{(byte) (i * 2), (byte) (i * 2 + 1)}) {
+        @Override
+        public void handleWritten(Channel channel) {
+          written.incrementAndGet();
+        }
+      });
+    }
+    host.listen();
+    client.close();
+    assertEquals(messageCount, written.get());
+    //the queued tasks are flushed by a few socket writes carrying several tasks each
+    assertTrue("socket writes:" + socketWrites.get(), socketWrites.get() < messageCount);
+    assertTrue("max bytes of a socket write:" + maxWriteBytes.get(), maxWriteBytes.get() > 2);
+  }
+
+  @Test(timeout = 10000)
+  public void testWriteWatermark() throws Exception {
+    final int messageCount = 10;
+    final int messageSize = 1000;
+    final ChannelHost host = ChannelHost.create();
+    final AtomicInteger received = new AtomicInteger();
+    final List<String> events = new ArrayList<>();
+    SocketAddress addr = new InetSocketAddress(9015);
+    host.setExceptionHandler((ch, ex) -> {
+      throw new RuntimeException(ex);
+    });
+    host.createServerChannel(addr, ch -> ch.read((self, buffer) -> {
+      received.addAndGet(buffer.getReadableSize());
+      buffer.moveReadPosition(buffer.getReadableSize());
+      if (received.get() == messageCount * messageSize) {
+        host.stopListen();
+        return true;
+      }
+      return false;
+    }));
+    Channel client = host.createChannel();
+    client.setWriteBufferWaterMark(1000, 4000);
+    client.addWriteWatermarkListener(new WriteWatermarkListener() {
+      @Override
+      public void onWriteSaturated(Channel ch) {
+        events.add("saturated");
+      }
+
+      @Override
+      public void onWriteDrained(Channel ch) {
+        events.add("drained");
+      }
+    });
+    client.connect(addr);
+    for (int i = 0; i < messageCount; i++) {
+      client.write(new ByteWriteTask(new byte[messageSize]));
+      assertEquals((i + 1) * messageSize > 4000, client.isWriteSaturated());
+    }
+    assertEquals(messageCount * messageSize, client.getPendingWriteBytes());
+    host.listen();
+    client.close();
+    assertEquals(0, client.getPendingWriteBytes());
+    assertFalse(client.isWriteSaturated());
+    assertEquals(Arrays.asList("saturated", "drained"), events);
+  }
+
+  @Test(timeout = 20000)
+  public void testWriteWatermarkWithConcurrentWriters() throws Exception {
+    final int rounds = 100;
+    final int writerCount = 4;
+    final int messageCount = 100;
+    final int messageSize = 10;
+    final ChannelHost host = ChannelHost.create();
+    final AtomicInteger received = new AtomicInteger();
+    SocketAddress addr = new InetSocketAddress(9035);
+    host.createServerChannel(addr, ch -> ch.read((self, buffer) -> {
+      received.addAndGet(buffer.getReadableSize());
+      buffer.moveReadPosition(buffer.getReadableSize());
+      return false;
+    }));
+    Channel client = host.createChannel();
+    //the watermarks are crossed by almost every write
+    client.setWriteBufferWaterMark(messageSize, 2 * messageSize);
+    client.connect(addr);
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      //every round ends with the event loop draining the writes racing with the last writers
+      for (int r = 1; r <= rounds; r++) {
+        Thread[] writers = new Thread[writerCount];
+        for (int i = 0; i < writerCount; i++) {
+          writers[i] = new Thread(() -> {
+            for (int j = 0; j < messageCount; j++) {
+              client.write(new ByteWriteTask(new byte[messageSize]));
+            }
+          });
+          writers[i].start();
+        }
+        for (Thread w : writers) {
+          w.join();
+        }
+        while (received.get() < r * writerCount * messageCount * messageSize) {
+          Thread.sleep(1);
+        }
+        //the written tasks are finished before the submitted task runs
+        host.submit(() -> null).get();
+        assertEquals(0, client.getPendingWriteBytes());
+        assertFalse(client.isWriteSaturated());
+      }
+    } finally {
+      client.close();
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testLengthFieldFrame() throws Exception {
+    doFrameTest(9016, null, null);
+  }
+
+  @Test(timeout = 10000)
+  public void testLengthFieldFrameWithSSL() throws Exception {
+    doFrameTest(
+        9017,
+        ch -> Collections.singletonList(createSSLCodec(false)),
+        ch -> Collections.singletonList(createSSLCodec(true))
+    );
+  }
+
+  @Test(timeout = 10000)
+  public void testDelimiterFrame() throws Exception {
+    final int[] frameSizes = new int[]{0, 1, 100, 4095, 5000, 70000, 300000, 3};
+    final byte[][] frames = new byte[frameSizes.length][];
+    Random random = new Random(9018);
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = new byte[frameSizes[i]];
+      for (int j = 0; j < frames[i].length; j++) {
+        frames[i][j] = (byte) ('a' + random.nextInt(26));
+      }
+    }
+    final DelimiterFrameCodec frameCodec = new DelimiterFrameCodec("\r\n".getBytes(), 1024 * 1024);
+    final ChannelHost host = ChannelHost.create();
+    final AtomicInteger received = new AtomicInteger();
+    SocketAddress addr = new InetSocketAddress(9018);
+    host.setExceptionHandler((ch, ex) -> {
+      throw new RuntimeException(ex);
+    });
+    host.createServerChannel(addr, ch -> {
+      ch.read(frameCodec.newReadTask((self, frame) -> {
+        byte[] data = new byte[frame.getReadableSize()];
+        frame.poll(data);
+        assertArrayEquals(frames[received.getAndIncrement()], data);
+        if (received.get() == frames.length) {
+          host.stopListen();
+          return true;
+        }
+        return false;
+      }));
+    });
+    Channel client = host.createChannel();
+    client.connect(addr);
+    for (byte[] f : frames) {
+      client.write(frameCodec.newWriteTask(f));
+    }
+    host.listen();
+    client.close();
+    assertEquals(frames.length, received.get());
+  }
+
+  private void doFrameTest(int port, CodecFactory serverCodecFactory, CodecFactory clientCodecFactory) throws Exception {
+    final int[] frameSizes = new int[]{0, 1, 100, 4090, 5000, 70000, 300000, 3};
+    final byte[][] frames = new byte[frameSizes.length][];
+    Random random = new Random(port);
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = new byte[frameSizes[i]];
+      random.nextBytes(frames[i]);
+    }
+    final LengthFieldFrameCodec frameCodec = new LengthFieldFrameCodec();
+    final ChannelHost host = ChannelHost.create();
+    final AtomicInteger received = new AtomicInteger();
+    SocketAddress addr = new InetSocketAddress(port);
+    host.setExceptionHandler((ch, ex) -> {
+      throw new RuntimeException(ex);
+    });
+    host.createServerChannel(addr, ch -> {
+      if (serverCodecFactory != null) {
+        for (Codec c : serverCodecFactory.createCodecs(ch)) {
+          ch.addCodec(c);
+        }
+      }
+      ch.read(frameCodec.newReadTask((self, frame) -> {
+        byte[] data = new byte[frame.getReadableSize()];
+        frame.poll(data);
+        assertArrayEquals(frames[received.getAndIncrement()], data);
+        if (received.get() == frames.length) {
+          host.stopListen();
+          return true;
+        }
+        return false;
+      }));
+    });
+    Channel client = host.createChannel();
+    client.connect(addr);
+    if (clientCodecFactory != null) {
+      for (Codec c : clientCodecFactory.createCodecs(client)) {
+        client.addCodec(c);
+      }
+    }
+    for (byte[] f : frames) {
+      client.write(frameCodec.newWriteTask(f));
+    }
+    host.listen();
+    client.close();
+    assertEquals(frames.length, received.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testFileRegion() throws Exception {
+    doFileRegionTest(9009, null, null);
+  }
+
+  @Test(timeout = 10000)
+  public void testFileRegionWithSSL() throws Exception {
+    doFileRegionTest(
+        9010,
+        ch -> Collections.singletonList(createSSLCodec(false)),
+        ch -> Collections.singletonList(createSSLCodec(true))
+    );
+  }
+
+  @Test(timeout = 10000)
+  public void testFileRegionWithDeflate() throws Exception {
+    CodecFactory cf = ch -> Collections.singletonList((Codec) new DeflateCodec());
+    doFileRegionTest(9011, cf, cf);
+  }
+
+  @Test(timeout = 10000)
+  public void testFileRegionWaitsForWritable() throws Exception {
+    final byte[] content = new byte[16 * 1024 * 1024];
+    File file = File.createTempFile("netlib", ".bin");
+    file.deleteOnExit();
+    Files.write(file.toPath(), content);
+    final ChannelHost host = ChannelHost.create();
+    final AtomicInteger emptyTransfers = new AtomicInteger();
+    final AtomicLong received = new AtomicLong();
+    final CompletableFuture<Channel> accepted = new CompletableFuture<>();
+    host.setMetricsListener(new MetricsListener() {
+      @Override
+      public void onSocketWrite(Channel channel, long bytes) {
+        if (bytes == 0) {
+          emptyTransfers.incrementAndGet();
+        }
+      }
+    });
+    SocketAddress addr = new InetSocketAddress(9037);
+    //the server doesn't read until the socket buffers are full
+    host.createServerChannel(addr, accepted::complete);
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    Channel client = host.createChannel();
+    try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      client.connectAsync(addr).get();
+      client.write(new FileRegionWriteTask(fc));
+      Channel server = accepted.get(5, TimeUnit.SECONDS);
+      Thread.sleep(300);
+      //a full socket is waited for instead of retried in every loop iteration
+      assertTrue("empty transfers:" + emptyTransfers.get(), emptyTransfers.get() <= 2);
+      server.read((self, buffer) -> {
+        received.addAndGet(buffer.getReadableSize());
+        buffer.moveReadPosition(buffer.getReadableSize());
+        return received.get() == content.length;
+      });
+      while (received.get() < content.length) {
+        Thread.sleep(1);
+      }
+    } finally {
+      client.close();
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  private void doFileRegionTest(int port, CodecFactory serverCodecFactory, CodecFactory clientCodecFactory) throws Exception {
+    final byte[] content = new byte[200 * 1024 + 7];
+    new Random(port).nextBytes(content);
+    File file = File.createTempFile("netlib", ".bin");
+    file.deleteOnExit();
+    Files.write(file.toPath(), content);
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    final ChannelHost host = ChannelHost.create();
+    host.setExceptionHandler((ch, ex) -> {
+      throw new RuntimeException(ex);
+    });
+    SocketAddress addr = new InetSocketAddress(port);
+    try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      host.createServerChannel(addr, ch -> {
+        if (serverCodecFactory != null) {
+          for (Codec c : serverCodecFactory.createCodecs(ch)) {
+            ch.addCodec(c);
+          }
+        }
+        ch.write(new FileRegionWriteTask(fc, 0, content.length));
+      });
+      Channel client = host.createChannel();
+      client.connect(addr);
+      if (clientCodecFactory != null) {
+        for (Codec c : clientCodecFactory.createCodecs(client)) {
+          client.addCodec(c);
+        }
+      }
+      client.read((self, buffer) -> {
+        byte[] b = new byte[buffer.getReadableSize()];
+        buffer.poll(b);
+        received.write(b, 0, b.length);
+        if (received.size() >= content.length) {
+          host.stopListen();
+          return true;
+        }
+        return false;
+      });
+      host.listen();
+      client.close();
+    }
+    assertArrayEquals(content, received.toByteArray());
+  }
+
+  @Test(timeout = 10000)
+  public void testHostGroup() throws Exception {
+    final byte[] data = new byte[]{3, 4, 5, 6, 7, 8, 9, 3, 7, 9, 3};
+    final int clientCount = 8;
+    final ChannelHostGroup group = ChannelHostGroup.create(2);
+    final AtomicInteger verified = new AtomicInteger();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    SocketAddress addr = new InetSocketAddress(9005);
+    group.setExceptionHandler((ch, ex) -> {
+      failure.compareAndSet(null, ex);
+      group.stopListen();
+    });
+    group.createServerChannel(addr, ch -> ch.read((self, readBuffer) -> {
+      if (readBuffer.getReadableSize() < data.length) {
+        return false;
+      }
+      byte[] receivedData = new byte[data.length];
+      readBuffer.poll(receivedData);
+      self.write(new ByteWriteTask(receivedData));
+      return true;
+    }));
+    for (int i = 0; i < clientCount; i++) {
+      Channel client = group.createChannel();
+      client.connect(addr);
+      client.write(new ByteWriteTask(data));
+      client.read((self, b) -> {
+        if (b.getReadableSize() < data.length) {
+          return false;
+        }
+        byte[] receivedData = new byte[data.length];
+        b.poll(receivedData);
+        assertArrayEquals(data, receivedData);
+        if (verified.incrementAndGet() == clientCount) {
+          group.stopListen();
+        }
+        return true;
+      });
+    }
+    group.listen();
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    Assert.assertEquals(clientCount, verified.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testAddCodecFromForeignThread() throws Exception {
+    final byte[] data = new byte[]{3, 4, 5, 6, 7, 8, 9, 3, 7, 9, 3};
+    final ChannelHost host = ChannelHost.create();
+    final AtomicBoolean initInEventLoop = new AtomicBoolean();
+    final CompletableFuture<byte[]> echoed = new CompletableFuture<>();
+    SocketAddress addr = new InetSocketAddress(9036);
+    host.setExceptionHandler((ch, ex) -> echoed.completeExceptionally(ex));
+    host.createServerChannel(addr, ch -> {
+      ch.addCodec(new DeflateCodec());
+      ch.read((self, buffer) -> {
+        if (buffer.getReadableSize() < data.length) {
+          return false;
+        }
+        byte[] receivedData = new byte[data.length];
+        buffer.poll(receivedData);
+        self.write(new ByteWriteTask(receivedData));
+        return true;
+      });
+    });
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    Channel client = host.createChannel();
+    try {
+      client.connectAsync(addr).get();
+      client.addCodec(new Codec() {
+        @Override
+        public void init(Channel channel, CodecInitProgress progress) {
+          initInEventLoop.set(channel.getHost().inEventLoop());
+          progress.done();
+        }
+
+        @Override
+        public Processor getEncoder() {
+          return null;
+        }
+
+        @Override
+        public Processor getDecoder() {
+          return null;
+        }
+      });
+      client.addCodec(new DeflateCodec());
+      client.write(new ByteWriteTask(data));
+      client.read((self, buffer) -> {
+        if (buffer.getReadableSize() < data.length) {
+          return false;
+        }
+        byte[] receivedData = new byte[data.length];
+        buffer.poll(receivedData);
+        echoed.complete(receivedData);
+        return true;
+      });
+      assertArrayEquals(data, echoed.get(5, TimeUnit.SECONDS));
+      assertTrue(initInEventLoop.get());
+    } finally {
+      client.close();
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testShardedServerChannels() throws Exception {
+    final int clientCount = 16;
+    final ChannelHostGroup group = ChannelHostGroup.create(2);
+    final AtomicInteger accepted = new AtomicInteger();
+    final Set<Thread> acceptThreads = Collections.synchronizedSet(new HashSet<>());
+    List<ServerChannel> servers = group.createShardedServerChannels(new InetSocketAddress("127.0.0.1", 9024), 128, ch -> {
+      acceptThreads.add(Thread.currentThread());
+      Assert.assertTrue(ch.getHost().inEventLoop());
+      ch.close();
+      if (accepted.incrementAndGet() == clientCount) {
+        group.stopListen();
+      }
+    });
+    if (ServerChannel.isReusePortSupported()) {
+      Assert.assertEquals(2, servers.size());
+      Assert.assertEquals(servers.get(0).serverSocketChannel().getLocalAddress(), servers.get(1).serverSocketChannel().getLocalAddress());
+    } else {
+      Assert.assertEquals(1, servers.size());
+    }
+    List<SocketChannel> clients = new ArrayList<>();
+    for (int i = 0; i < clientCount; i++) {
+      clients.add(SocketChannel.open(new InetSocketAddress("127.0.0.1", 9024)));
+    }
+    group.listen();
+    for (SocketChannel c : clients) {
+      c.close();
+    }
+    for (ServerChannel s : servers) {
+      s.serverSocketChannel().close();
+    }
+    Assert.assertEquals(clientCount, accepted.get());
+    Assert.assertFalse(acceptThreads.isEmpty());
+  }
+
+  @Test(timeout = 10000)
+  public void testChannelOptions() throws Exception {
+    final ChannelHost host = ChannelHost.create();
+    ChannelOptions clientOptions = new ChannelOptions();
+    clientOptions.setTcpNoDelay(true);
+    clientOptions.setSendBufferSize(128 * 1024);
+    host.setChannelOptions(clientOptions);
+    ChannelOptions serverOptions = new ChannelOptions();
+    serverOptions.setKeepAlive(true);
+    serverOptions.setLinger(0);
+    final AtomicReference<SocketChannel> accepted = new AtomicReference<>();
+    ServerChannel server = host.createServerChannel(new InetSocketAddress(9026), ch -> {
+      accepted.set(ch.socketChannel());
+      host.stopListen();
+    });
+    server.setChannelOptions(serverOptions);
+    Channel client = host.createChannel();
+    client.connect(new InetSocketAddress("127.0.0.1", 9026));
+    host.listen();
+    Assert.assertTrue(client.socketChannel().getOption(StandardSocketOptions.TCP_NODELAY));
+    Assert.assertTrue(client.socketChannel().getOption(StandardSocketOptions.SO_SNDBUF) >= 128 * 1024);
+    Assert.assertFalse(client.socketChannel().getOption(StandardSocketOptions.SO_KEEPALIVE));
+    Assert.assertTrue(accepted.get().getOption(StandardSocketOptions.SO_KEEPALIVE));
+    Assert.assertEquals(0, (int) accepted.get().getOption(StandardSocketOptions.SO_LINGER));
+    Assert.assertFalse(accepted.get().getOption(StandardSocketOptions.TCP_NODELAY));
+    client.close();
+    accepted.get().close();
+    server.serverSocketChannel().close();
+  }
+
+  @Test(timeout = 10000)
+  public void testAcceptSpinLimit() throws Exception {
+    //3 + 1 pending,3 + 1 pending,then the last 2
+    doAcceptSpinLimitTest(9025, 10, 2);
+  }
+
+  @Test(timeout = 10000)
+  public void testAcceptSpinLimitWithoutPendingConnections() throws Exception {
+    doAcceptSpinLimitTest(9038, 3, 0);
+  }
+
+  private void doAcceptSpinLimitTest(int port, int clientCount, long expectedHits) throws Exception {
+    final ChannelHost host = ChannelHost.create();
+    host.setAcceptSpinLimit(3);
+    final AtomicInteger accepted = new AtomicInteger();
+    ServerChannel server = host.createServerChannel(new InetSocketAddress(port), 64, ch -> {
+      ch.close();
+      if (accepted.incrementAndGet() == clientCount) {
+        host.stopListen();
+      }
+    });
+    List<SocketChannel> clients = new ArrayList<>();
+    for (int i = 0; i < clientCount; i++) {
+      clients.add(SocketChannel.open(new InetSocketAddress("127.0.0.1", port)));
+    }
+    host.listen();
+    for (SocketChannel c : clients) {
+      c.close();
+    }
+    server.serverSocketChannel().close();
+    Assert.assertEquals(clientCount, accepted.get());
+    Assert.assertEquals(expectedHits, host.getAcceptSpinLimitHits());
+  }
+
+  @Test(timeout = 10000)
+  public void testBlockingChannel() throws Exception {
+    final byte[] data = new byte[200 * 1024];
+    new Random(9027).nextBytes(data);
+    final ChannelHost host = ChannelHost.create();
+    final ExecutorService handlers = Executors.newCachedThreadPool();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    host.createServerChannel(new InetSocketAddress(9027), ch -> {
+      BlockingChannel bc = new BlockingChannel(ch);
+      handlers.execute(() -> {
+        try (InputStream in = bc.getInputStream(); OutputStream out = bc.getOutputStream()) {
+          byte[] buffer = new byte[1000];
+          int len;
+          while ((len = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, len);
+          }
+        } catch (Throwable ex) {
+          failure.set(ex);
+        }
+      });
+    });
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      host.submit(() -> null).get();
+      BlockingChannel client = host.submit(() -> {
+        Channel ch = host.createChannel();
+        ch.connect(new InetSocketAddress("127.0.0.1", 9027));
+        return new BlockingChannel(ch);
+      }).get();
+      //write in another thread,the echoes would fill the socket buffers if nobody reads them
+      Future<?> written = handlers.submit(() -> {
+        OutputStream out = client.getOutputStream();
+        for (int i = 0; i < data.length; i += 3000) {
+          out.write(data, i, Math.min(3000, data.length - i));
+        }
+        out.flush();
+        return null;
+      });
+      byte[] received = new byte[data.length];
+      new DataInputStream(client.getInputStream()).readFully(received);
+      written.get();
+      assertArrayEquals(data, received);
+      client.setReadTimeout(50, TimeUnit.MILLISECONDS);
+      try {
+        client.getInputStream().read();
+        fail("read timeout expected");
+      } catch (SocketTimeoutException ex) {
+        //expected
+      }
+      client.close();
+      handlers.shutdown();
+      assertTrue(handlers.awaitTermination(5, TimeUnit.SECONDS));
+      Assert.assertNull(failure.get());
+    } finally {
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testAsyncPipeline() throws Exception {
+    final LengthFieldFrameCodec codec = new LengthFieldFrameCodec();
+    final ChannelHost host = ChannelHost.create();
+    host.createServerChannel(new InetSocketAddress(9028), ch -> echoFrames(codec, ch));
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      Channel client = host.submit(host::createChannel).get();
+      Assert.assertSame(client, client.connectAsync(new InetSocketAddress("127.0.0.1", 9028)).get());
+      int count = 100;
+      List<CompletableFuture<byte[]>> responses = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        client.writeAsync(ByteBuffer.allocate(12).putInt(8).putLong(i).array());
+        responses.add(client.readAsync(12));
+      }
+      CompletableFuture<Void> written = client.writeAsync(ByteBuffer.allocate(4).putInt(0).array());
+      CompletableFuture<byte[]> last = client.readAsync(4);
+      written.get();
+      assertEquals(0, ByteBuffer.wrap(last.get()).getInt());
+      for (int i = 0; i < count; i++) {
+        ByteBuffer response = ByteBuffer.wrap(responses.get(i).get());
+        assertEquals(8, response.getInt());
+        assertEquals(i, response.getLong());
+      }
+      CompletableFuture<byte[]> pending = client.readAsync(1);
+      client.close();
+      try {
+        pending.get();
+        fail("closed channel expected");
+      } catch (ExecutionException ex) {
+        assertTrue(ex.getCause() instanceof ClosedChannelException);
+      }
+      assertTrue(client.writeAsync(new byte[1]).handle((r, ex) -> ex).get() instanceof ClosedChannelException);
+    } finally {
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testReadBeforeConnect() throws Exception {
+    final ChannelHost host = ChannelHost.create();
+    host.createServerChannel(new InetSocketAddress(9031), ch -> ch.write(new ByteWriteTask(new byte[]{1, 2, 3})));
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      Channel client = host.submit(host::createChannel).get();
+      //queued before the socket is connected,it should wait for the connection
+      CompletableFuture<byte[]> read = client.readAsync(3);
+      //let the loop poll the unconnected socket a while
+      host.submit(() -> null).get();
+      Thread.sleep(100);
+      client.connectAsync(new InetSocketAddress("127.0.0.1", 9031)).get();
+      assertArrayEquals(new byte[]{1, 2, 3}, read.get());
+      client.close();
+    } finally {
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  private static void echoFrames(LengthFieldFrameCodec codec, Channel ch) {
+    codec.readFrameAsync(ch).thenAccept(frame -> {
+      ch.write(codec.newWriteTask(frame));
+      echoFrames(codec, ch);
+    });
+  }
+
+  @Test(timeout = 10000)
+  public void testFlowEcho() throws Exception {
+    final byte[] data = new byte[300 * 1024];
+    new Random(9029).nextBytes(data);
+    final ChannelHost host = ChannelHost.create();
+    host.createServerChannel(new InetSocketAddress(9029), ch -> {
+      new ChannelPublisher(ch).subscribe(new ChannelSubscriber(ch, 4, true));
+    });
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      Channel client = host.submit(host::createChannel).get();
+      client.connectAsync(new InetSocketAddress("127.0.0.1", 9029)).get();
+      client.writeAsync(data);
+      assertArrayEquals(data, client.readAsync(data.length).get());
+      client.close();
+    } finally {
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testPublisherBackpressure() throws Exception {
+    final ChannelOptions options = new ChannelOptions();
+    options.setSendBufferSize(16 * 1024);
+    options.setReceiveBufferSize(16 * 1024);
+    final ChannelHost host = ChannelHost.create();
+    host.setChannelOptions(options);
+    final AtomicReference<Channel> server = new AtomicReference<>();
+    host.createServerChannel(new InetSocketAddress(9030), ch -> {
+      server.set(ch);
+      ch.write(new ByteWriteTask(new byte[4 * 1024 * 1024]));
+    });
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      Channel client = host.submit(host::createChannel).get();
+      final AtomicInteger items = new AtomicInteger();
+      final AtomicLong bytes = new AtomicLong();
+      final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+      final CompletableFuture<Void> completed = new CompletableFuture<>();
+      new ChannelPublisher(client).subscribe(new Flow.Subscriber<ByteBuffer>() {
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+          subscription.set(s);
+          s.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+          items.incrementAndGet();
+          bytes.addAndGet(item.remaining());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          completed.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+          completed.complete(null);
+        }
+      });
+      client.connectAsync(new InetSocketAddress("127.0.0.1", 9030)).get();
+      Thread.sleep(300);
+      assertEquals(1, items.get());
+      //the reads are paused,so the server can't write all data
+      assertTrue(server.get().getPendingWriteBytes() > 0);
+      subscription.get().request(Long.MAX_VALUE);
+      while (bytes.get() < 4 * 1024 * 1024) {
+        Thread.sleep(10);
+      }
+      assertEquals(4 * 1024 * 1024, bytes.get());
+      server.get().close();
+      completed.get();
+    } finally {
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSubmissionPublisher() throws Exception {
+    final byte[] data = new byte[64 * 1024];
+    new Random(9032).nextBytes(data);
+    final CompletableFuture<byte[]> received = new CompletableFuture<>();
+    final ChannelHost host = ChannelHost.create();
+    host.createServerChannel(new InetSocketAddress(9032), ch -> {
+      ch.readAsync(data.length).thenAccept(received::complete);
+    });
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      Channel client = host.submit(host::createChannel).get();
+      client.connectAsync(new InetSocketAddress("127.0.0.1", 9032)).get();
+      ChannelSubscriber subscriber = new ChannelSubscriber(client, 4, true);
+      try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < data.length; i += 1024) {
+          publisher.submit(ByteBuffer.wrap(data, i, 1024));
+        }
+      }
+      subscriber.getCompletion().get();
+      assertArrayEquals(data, received.get());
+    } finally {
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSubmit() throws Exception {
+    final ChannelHost host = ChannelHost.create();
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      for (int i = 0; i < 100; i++) {
+        Future<Thread> f = host.submit(Thread::currentThread);
+        Assert.assertSame(loop, f.get());
+      }
+    } finally {
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSchedule() throws Exception {
+    final ChannelHost host = ChannelHost.create();
+    final List<Integer> fired = Collections.synchronizedList(new ArrayList<>());
+    host.schedule(() -> fired.add(2), 60, TimeUnit.MILLISECONDS);
+    host.schedule(() -> fired.add(1), 20, TimeUnit.MILLISECONDS);
+    Timeout cancelled = host.schedule(() -> fired.add(-1), 40, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(cancelled.cancel());
+    Assert.assertFalse(cancelled.cancel());
+    long startTime = System.nanoTime();
+    host.schedule(host::stopListen, 100, TimeUnit.MILLISECONDS);
+    host.listen();
+    Assert.assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(100));
+    Assert.assertEquals(Arrays.asList(1, 2), fired);
+    Assert.assertEquals(0, host.getPendingTimeoutCount());
+  }
+
+  @Test(timeout = 10000)
+  public void testIdleTimeout() throws Exception {
+    final ChannelHost host = ChannelHost.create();
+    final List<IdleState> states = new ArrayList<>();
+    SocketAddress addr = new InetSocketAddress(9019);
+    host.createServerChannel(addr, ch -> {
+      ch.addIdleStateListener((self, state) -> {
+        states.add(state);
+        self.close();
+        host.stopListen();
+      });
+      ch.setIdleTimeout(100, 0, 0, TimeUnit.MILLISECONDS);
+    });
+    Channel client = host.createChannel();
+    client.connect(addr);
+    //keeps the server from being all idle but never reaches its reader
+    client.setIdleTimeout(0, 0, 50, TimeUnit.MILLISECONDS);
+    client.addIdleStateListener((self, state) -> Assert.assertEquals(IdleState.ALL_IDLE, state));
+    long startTime = System.nanoTime();
+    host.listen();
+    client.close();
+    Assert.assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(100));
+    Assert.assertEquals(Collections.singletonList(IdleState.READER_IDLE), states);
+  }
+
+  @Test(timeout = 10000)
+  public void testSpinLimit() throws Exception {
+    final byte[] data = new byte[256 * 1024];
+    new Random(1).nextBytes(data);
+    final ChannelHost host = ChannelHost.create();
+    host.setReceiveBufferSizes(1024, 1024, 1024);
+    host.setReadSpinLimit(2, 1024 * 1024);
+    host.setWriteSpinLimit(2, 1024 * 1024);
+    host.setExceptionHandler((ch, ex) -> {
+      throw new RuntimeException(ex);
+    });
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    SocketAddress addr = new InetSocketAddress(9023);
+    host.createServerChannel(addr, ch -> ch.read((self, buffer) -> {
+      byte[] b = new byte[buffer.getReadableSize()];
+      buffer.poll(b);
+      received.write(b, 0, b.length);
+      if (received.size() == data.length) {
+        self.close();
+        host.stopListen();
+        return true;
+      }
+      return false;
+    }));
+    Channel client = host.createChannel();
+    client.connect(addr);
+    for (int i = 0; i < data.length; i += 4096) {
+      client.write(new ByteWriteTask(data, i, 4096));
+    }
+    host.listen();
+    client.close();
+    assertArrayEquals(data, received.toByteArray());
+    assertTrue(host.getReadSpinLimitHits() > 0);
+    assertTrue(host.getWriteSpinLimitHits() > 0);
+  }
+
+  @Test(timeout = 10000)
+  public void testIdleReceiveBuffer() throws Exception {
+    final int maxSize = 64 * 1024;
+    final int chunkSize = 40 * 1024;
+    final int chunks = 30;
+    final List<IOBuffer> grownBuffers = Collections.synchronizedList(new ArrayList<>());
+    final ChannelHost host = ChannelHost.create();
+    host.setReceiveBufferSizes(1024, 1024, maxSize);
+    host.setReceiveBufferIdleTime(200, TimeUnit.MILLISECONDS);
+    //read until the socket is drained
+    host.setReadSpinLimit(Integer.MAX_VALUE, Long.MAX_VALUE);
+    host.setBufferAllocator(new IOBufferAllocator() {
+      @Override
+      public IOBuffer allocate(int capacity) {
+        IOBuffer buffer = IOBuffer.create(capacity);
+        if (capacity > 4096) {
+          grownBuffers.add(buffer);
+        }
+        return buffer;
+      }
+
+      @Override
+      public IOBuffer allocateDirect(int capacity) {
+        return allocate(capacity);
+      }
+    });
+    final AtomicInteger received = new AtomicInteger();
+    SocketAddress addr = new InetSocketAddress(9033);
+    host.createServerChannel(addr, ch -> ch.read((self, buffer) -> {
+      received.addAndGet(buffer.getReadableSize());
+      buffer.poll(new byte[buffer.getReadableSize()]);
+      //keep waiting for more data like an idle connection
+      return false;
+    }));
+    Channel client = host.createChannel();
+    client.connect(addr);
+    Thread loop = new Thread(host::listen);
+    loop.start();
+    try {
+      //a burst grows the buffer to the max size
+      sendAndWait(client, received, new byte[1024 * 1024]);
+      int allocations = grownBuffers.size();
+      assertTrue(allocations > 0);
+      //partial reads shortly after each other keep the grown buffer
+      for (int i = 0; i < chunks; i++) {
+        sendAndWait(client, received, new byte[chunkSize]);
+        Thread.sleep(5);
+      }
+      assertTrue(grownBuffers.size() - allocations < chunks / 2);
+      //the buffer is shrunk once the channel stays idle
+      Thread.sleep(600);
+      host.submit(() -> {
+        for (IOBuffer b : grownBuffers) {
+          assertEquals(0, b.refCnt());
+        }
+        return null;
+      }).get();
+    } finally {
+      client.close();
+      host.stopListen();
+      loop.join();
+    }
+  }
+
+  private void sendAndWait(Channel client, AtomicInteger received, byte[] data) throws InterruptedException {
+    int expected = received.get() + data.length;
+    client.write(new ByteWriteTask(data));
+    while (received.get() < expected) {
+      Thread.sleep(1);
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testHandshakeTimeout() throws Exception {
+    final ChannelHost host = ChannelHost.create();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    host.setExceptionHandler((ch, ex) -> {
+      failure.set(ex);
+      ch.close();
+      host.stopListen();
+    });
+    SocketAddress addr = new InetSocketAddress(9020);
+    host.createServerChannel(addr, ch -> {
+      ch.setHandshakeTimeout(100, TimeUnit.MILLISECONDS);
+      ch.addCodec(createSSLCodec(false));
+    });
+    //the client never starts the handshake
+    Channel client = host.createChannel();
+    client.connect(addr);
+    host.listen();
+    client.close();
+    Assert.assertTrue(failure.get() instanceof HandshakeTimeoutException);
+  }
+
   private void doTest(int port, final CodecFactory serverCodecFactory, final CodecFactory clientCodecFactory) throws Exception {
+    doTest(port, false, serverCodecFactory, clientCodecFactory);
+  }
+
+  private void doTest(int port, boolean directSocketBuffer, final CodecFactory serverCodecFactory, final CodecFactory clientCodecFactory) throws Exception {
+    doTest(port, host -> host.setDirectSocketBuffer(directSocketBuffer), serverCodecFactory, clientCodecFactory);
+  }
+
+  private void doTest(int port, Consumer<ChannelHost> hostInitializer, final CodecFactory serverCodecFactory, final CodecFactory clientCodecFactory) throws Exception {
     final byte[] data = new byte[]{3, 4, 5, 6, 7, 8, 9, 3, 7, 9, 3};
     final ChannelHost host = ChannelHost.create();
+    hostInitializer.accept(host);
     SocketAddress addr = new InetSocketAddress(port);
     Channel client = host.createChannel();
     host.setExceptionHandler((ch, ex) -> {
@@ -152,12 +1398,16 @@ public class ChannelHostTest {
   }
   
   private Codec createSSLCodec(boolean clientMode){
+    return createSSLCodec(clientMode, null);
+  }
+
+  private Codec createSSLCodec(boolean clientMode, Executor delegatedTaskExecutor){
     File keyStoreFile = new File("sslclientkeys");
     //String trustStore = "sslclientkeys";
     String pwd = "net-lib";
     try{
     SSLContext context = SSLContextUtil.createFromKeyStore(keyStoreFile, pwd);
-    return new SSLCodec(context, clientMode);
+    return new SSLCodec(context, clientMode, delegatedTaskExecutor);
     }catch(Exception ex){
       throw new RuntimeException(ex);
     }
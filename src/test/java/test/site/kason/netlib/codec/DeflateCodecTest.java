@@ -0,0 +1,121 @@
+package test.site.kason.netlib.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.codec.DeflateCodec;
+import site.kason.netlib.codec.DeflateDecodeProcessor;
+import site.kason.netlib.codec.DeflateEncodeProcessor;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ChannelHost;
+import site.kason.netlib.tcp.pipeline.Processor;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class DeflateCodecTest {
+
+    @Test
+    public void testDictionaryAcrossWrites() {
+        byte[] message = createMessage(300);
+        DeflateEncodeProcessor encoder = new DeflateEncodeProcessor();
+        DeflateDecodeProcessor decoder = new DeflateDecodeProcessor();
+        byte[] first = process(encoder, message);
+        assertArrayEquals(message, process(decoder, first));
+        //the later writes refer to the earlier ones instead of compressing them again
+        for (int i = 0; i < 3; i++) {
+            byte[] encoded = process(encoder, message);
+            assertTrue(encoded.length * 4 < first.length);
+            //every write is flushed,so it is decoded without the following writes
+            assertArrayEquals(message, process(decoder, encoded));
+        }
+        encoder.end();
+        decoder.end();
+    }
+
+    @Test
+    public void testEndedWhenChannelClosed() throws Exception {
+        ChannelHost host = ChannelHost.create();
+        Channel ch = host.createChannel();
+        DeflateCodec codec = new DeflateCodec();
+        ch.addCodec(codec);
+        ch.close();
+        assertEnded(codec.getEncoder());
+        assertEnded(codec.getDecoder());
+    }
+
+    @Test
+    public void testPeerFinishingEveryChunk() {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream streams = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            byte[] chunk = createMessage(10000 + i);
+            data.write(chunk, 0, chunk.length);
+            //a complete stream for every chunk
+            Deflater deflater = new Deflater();
+            deflater.setInput(chunk);
+            deflater.finish();
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buffer);
+                streams.write(buffer, 0, len);
+            }
+            deflater.end();
+        }
+        DeflateDecodeProcessor decoder = new DeflateDecodeProcessor();
+        assertArrayEquals(data.toByteArray(), process(decoder, streams.toByteArray()));
+        decoder.end();
+    }
+
+    private void assertEnded(Processor processor) {
+        IOBuffer in = IOBuffer.create(processor.getMinInBufferSize());
+        IOBuffer out = IOBuffer.create(processor.getMinOutBufferSize());
+        in.push(new byte[]{1, 2, 3}, 0, 3);
+        try {
+            processor.process(in, out);
+            fail("processed after ended");
+        } catch (NullPointerException ex) {
+            //thrown by the ended deflater or inflater
+        }
+    }
+
+    private byte[] createMessage(int size) {
+        byte[] message = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            message[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return message;
+    }
+
+    private byte[] process(Processor processor, byte[] data) {
+        IOBuffer in = IOBuffer.create(processor.getMinInBufferSize());
+        IOBuffer out = IOBuffer.create(processor.getMinOutBufferSize());
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int offset = 0;
+        boolean produced = true;
+        //the output left in the processor is pending until a call produces nothing
+        while (offset < data.length || in.getReadableSize() > 0 || produced) {
+            in.compact();
+            int len = Math.min(in.getWritableSize(), data.length - offset);
+            in.push(data, offset, len);
+            offset += len;
+            int oldReadable = in.getReadableSize();
+            processor.process(in, out);
+            produced = out.getReadableSize() > 0;
+            byte[] bs = new byte[out.getReadableSize()];
+            out.poll(bs);
+            out.compact();
+            result.write(bs, 0, bs.length);
+            if (len == 0 && !produced && oldReadable > 0 && in.getReadableSize() == oldReadable) {
+                fail("no progress");
+            }
+        }
+        return result.toByteArray();
+    }
+
+}
@@ -0,0 +1,119 @@
+package test.site.kason.netlib.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.codec.DelimiterFrameCodec;
+import site.kason.netlib.codec.DelimiterScanner;
+import site.kason.netlib.codec.TooLongFrameException;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.ReadTask;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class DelimiterFrameCodecTest {
+
+    @Test
+    public void testScanner() {
+        Random random = new Random(1);
+        for (int round = 0; round < 1000; round++) {
+            byte[] data = new byte[random.nextInt(64)];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) random.nextInt(4);
+            }
+            ByteBuffer bb = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            int from = data.length == 0 ? 0 : random.nextInt(data.length);
+            for (byte value = 0; value < 4; value++) {
+                assertEquals(naiveIndexOf(data, from, value), DelimiterScanner.indexOf(bb, from, data.length, value));
+            }
+            byte[] seq = new byte[]{1, 2, 3};
+            assertEquals(naiveIndexOf(data, from, seq), DelimiterScanner.indexOf(bb, from, data.length, seq));
+        }
+    }
+
+    @Test
+    public void testLines() {
+        DelimiterFrameCodec codec = DelimiterFrameCodec.lines();
+        IOBuffer buffer = IOBuffer.create(1024);
+        buffer.push("hello\r\n\nworld\nbye".getBytes(StandardCharsets.US_ASCII));
+        List<String> lines = new ArrayList<>();
+        ReadTask task = codec.newReadTask((ch, frame) -> {
+            byte[] data = new byte[frame.getReadableSize()];
+            frame.poll(data);
+            lines.add(new String(data, StandardCharsets.US_ASCII));
+            return false;
+        });
+        assertFalse(task.handleRead(null, buffer));
+        assertEquals(3, lines.size());
+        assertEquals("hello", lines.get(0));
+        assertEquals("", lines.get(1));
+        assertEquals("world", lines.get(2));
+        assertEquals(3, buffer.getReadableSize());
+        buffer.push("\n".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(task.handleRead(null, buffer));
+        assertEquals("bye", lines.get(3));
+    }
+
+    @Test
+    public void testPartialDelimiter() {
+        byte[] delimiter = "--".getBytes(StandardCharsets.US_ASCII);
+        DelimiterFrameCodec codec = new DelimiterFrameCodec(delimiter, 100);
+        byte[] source = "a-b--c--".getBytes(StandardCharsets.US_ASCII);
+        IOBuffer buffer = IOBuffer.create(100);
+        List<String> frames = new ArrayList<>();
+        ReadTask task = codec.newReadTask((ch, frame) -> {
+            byte[] data = new byte[frame.getReadableSize()];
+            frame.poll(data);
+            frames.add(new String(data, StandardCharsets.US_ASCII));
+            return frames.size() == 2;
+        });
+        for (int i = 0; i < source.length - 1; i++) {
+            buffer.push(source, i, 1);
+            assertFalse(task.handleRead(null, buffer));
+        }
+        buffer.push(source, source.length - 1, 1);
+        buffer.push(new byte[]{'x'});
+        assertTrue(task.handleRead(null, buffer));
+        assertEquals("a-b", frames.get(0));
+        assertEquals("c", frames.get(1));
+        assertEquals(1, buffer.getReadableSize());
+    }
+
+    @Test(expected = TooLongFrameException.class)
+    public void testTooLongLine() {
+        DelimiterFrameCodec codec = DelimiterFrameCodec.lines(10);
+        IOBuffer buffer = IOBuffer.create(100);
+        buffer.push(new byte[11]);
+        codec.newReadTask((ch, frame) -> false).handleRead(null, buffer);
+    }
+
+    private static int naiveIndexOf(byte[] data, int from, byte value) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int naiveIndexOf(byte[] data, int from, byte[] seq) {
+        outer:
+        for (int i = from; i <= data.length - seq.length; i++) {
+            for (int j = 0; j < seq.length; j++) {
+                if (data[i + j] != seq[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+}
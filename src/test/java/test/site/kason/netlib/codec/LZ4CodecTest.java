@@ -0,0 +1,99 @@
+package test.site.kason.netlib.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.codec.LZ4DecodeException;
+import site.kason.netlib.codec.LZ4DecodeProcessor;
+import site.kason.netlib.codec.LZ4EncodeProcessor;
+import site.kason.netlib.io.DirectIOBuffer;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.pipeline.Processor;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class LZ4CodecTest {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    @Test
+    public void testCompressible() {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("hello,netlib!".charAt(i % 13) + i / 1000);
+        }
+        byte[] encoded = encode(data, true, false);
+        assertTrue(encoded.length < data.length / 4);
+        assertArrayEquals(data, decode(encoded, false));
+        assertArrayEquals(data, decode(encode(data, true, true), true));
+    }
+
+    @Test
+    public void testIncompressible() {
+        byte[] data = new byte[20000];
+        new Random(1).nextBytes(data);
+        byte[] raw = encode(data, true, false);
+        byte[] compressed = encode(data, false, false);
+        assertTrue(raw.length < compressed.length);
+        assertArrayEquals(data, decode(raw, false));
+        assertArrayEquals(data, decode(compressed, false));
+    }
+
+    @Test
+    public void testSmallBlocks() {
+        for (int len = 0; len < 64; len++) {
+            byte[] data = new byte[len];
+            for (int i = 0; i < len; i++) {
+                data[i] = (byte) (i % 3);
+            }
+            assertArrayEquals(data, decode(encode(data, false, false), false));
+        }
+    }
+
+    @Test(expected = LZ4DecodeException.class)
+    public void testMalformed() {
+        byte[] data = new byte[1000];
+        byte[] encoded = encode(data, false, false);
+        encoded[9] = (byte) 0x0F;
+        encoded[10] = 0;
+        encoded[11] = 0;
+        decode(encoded, false);
+    }
+
+    private byte[] encode(byte[] data, boolean compressOnlyIfSmaller, boolean direct) {
+        return process(new LZ4EncodeProcessor(BLOCK_SIZE, compressOnlyIfSmaller), data, direct);
+    }
+
+    private byte[] decode(byte[] data, boolean direct) {
+        return process(new LZ4DecodeProcessor(BLOCK_SIZE), data, direct);
+    }
+
+    private byte[] process(Processor processor, byte[] data, boolean direct) {
+        int inSize = processor.getMinInBufferSize();
+        int outSize = processor.getMinOutBufferSize();
+        IOBuffer in = direct ? DirectIOBuffer.create(inSize) : IOBuffer.create(inSize);
+        IOBuffer out = direct ? DirectIOBuffer.create(outSize) : IOBuffer.create(outSize);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int offset = 0;
+        while (offset < data.length || in.getReadableSize() > 0) {
+            in.compact();
+            int len = Math.min(in.getWritableSize(), data.length - offset);
+            in.push(data, offset, len);
+            offset += len;
+            int oldReadable = in.getReadableSize();
+            processor.process(in, out);
+            byte[] bs = new byte[out.getReadableSize()];
+            out.poll(bs);
+            out.compact();
+            result.write(bs, 0, bs.length);
+            if (len == 0 && in.getReadableSize() == oldReadable) {
+                fail("no progress");
+            }
+        }
+        return result.toByteArray();
+    }
+
+}
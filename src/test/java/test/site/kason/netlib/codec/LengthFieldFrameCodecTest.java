@@ -0,0 +1,90 @@
+package test.site.kason.netlib.codec;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.codec.LengthFieldFrameCodec;
+import site.kason.netlib.codec.TooLongFrameException;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.ReadTask;
+import site.kason.netlib.tcp.WriteTask;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class LengthFieldFrameCodecTest {
+
+    @Test
+    public void testLengthFields() {
+        int[] fieldLengths = new int[]{1, 2, 4, 8};
+        for (int fieldLength : fieldLengths) {
+            for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                LengthFieldFrameCodec codec = new LengthFieldFrameCodec(fieldLength, order, 1000);
+                IOBuffer buffer = IOBuffer.create(1024);
+                write(codec.newWriteTask(new byte[]{1, 2, 3}), buffer);
+                write(codec.newWriteTask(new byte[0]), buffer);
+                write(codec.newWriteTask(new byte[200]), buffer);
+                assertEquals(3 * fieldLength + 203, buffer.getReadableSize());
+                List<byte[]> frames = new ArrayList<>();
+                ReadTask task = codec.newReadTask((ch, frame) -> {
+                    byte[] data = new byte[frame.getReadableSize()];
+                    frame.poll(data);
+                    frames.add(data);
+                    return false;
+                });
+                assertFalse(task.handleRead(null, buffer));
+                assertEquals(3, frames.size());
+                assertArrayEquals(new byte[]{1, 2, 3}, frames.get(0));
+                assertEquals(0, frames.get(1).length);
+                assertEquals(200, frames.get(2).length);
+                assertEquals(0, buffer.getReadableSize());
+            }
+        }
+    }
+
+    @Test
+    public void testPartialFrame() {
+        LengthFieldFrameCodec codec = new LengthFieldFrameCodec();
+        IOBuffer source = IOBuffer.create(100);
+        write(codec.newWriteTask(new byte[]{7, 8, 9, 10}), source);
+        IOBuffer buffer = IOBuffer.create(100);
+        List<byte[]> frames = new ArrayList<>();
+        ReadTask task = codec.newReadTask((ch, frame) -> {
+            byte[] data = new byte[frame.getReadableSize()];
+            frame.poll(data);
+            frames.add(data);
+            return true;
+        });
+        for (int i = 0; i < 7; i++) {
+            byte[] b = new byte[1];
+            source.poll(b);
+            buffer.push(b);
+            assertFalse(task.handleRead(null, buffer));
+        }
+        buffer.push(new byte[]{10, 99});
+        assertTrue(task.handleRead(null, buffer));
+        assertArrayEquals(new byte[]{7, 8, 9, 10}, frames.get(0));
+        assertEquals(1, buffer.getReadableSize());
+    }
+
+    @Test(expected = TooLongFrameException.class)
+    public void testTooLongFrame() {
+        LengthFieldFrameCodec codec = new LengthFieldFrameCodec(2, ByteOrder.BIG_ENDIAN, 100);
+        IOBuffer buffer = IOBuffer.create(100);
+        buffer.push(new byte[]{0, 101});
+        codec.newReadTask((ch, frame) -> false).handleRead(null, buffer);
+    }
+
+    @Test(expected = TooLongFrameException.class)
+    public void testTooLongWrite() {
+        new LengthFieldFrameCodec(1, ByteOrder.BIG_ENDIAN, 1000).newWriteTask(new byte[256]);
+    }
+
+    private void write(WriteTask task, IOBuffer buffer) {
+        assertTrue(task.handleWrite(null, buffer));
+    }
+
+}
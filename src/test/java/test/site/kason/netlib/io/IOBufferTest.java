@@ -1,7 +1,9 @@
 package test.site.kason.netlib.io;
 
+import java.nio.ByteBuffer;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import site.kason.netlib.io.DirectIOBuffer;
 import site.kason.netlib.io.IOBuffer;
 
 /**
@@ -28,5 +30,40 @@ public class IOBufferTest {
         buff.poll(byteBuffer);
         assertArrayEquals(data2,byteBuffer);
     }
+
+    @Test
+    public void testDirect(){
+        IOBuffer buff = DirectIOBuffer.create(10);
+        assertFalse(buff.hasArray());
+        byte[] data = new byte[]{1,2,3,4,5,6,7,8};
+        byte[] byteBuffer = new byte[4];
+        buff.push(data);
+        buff.poll(byteBuffer);
+        assertArrayEquals(new byte[]{1,2,3,4}, byteBuffer);
+        buff.compact();
+        assertEquals(0, buff.getReadPosition());
+        assertEquals(6, buff.getWritableSize());
+        IOBuffer heap = IOBuffer.create(10);
+        assertEquals(4, heap.push(buff));
+        heap.poll(byteBuffer);
+        assertArrayEquals(new byte[]{5,6,7,8}, byteBuffer);
+    }
+
+    @Test
+    public void testSharedNioBuffer(){
+        for (IOBuffer buff : new IOBuffer[]{IOBuffer.create(10), DirectIOBuffer.create(10)}) {
+            buff.push(new byte[]{1,2,3,4,5,6});
+            ByteBuffer view = buff.sharedNioBuffer(2, 3);
+            assertEquals(2, view.position());
+            assertEquals(5, view.limit());
+            assertEquals(3, view.get());
+            view.position(view.limit());
+            ByteBuffer again = buff.sharedNioBuffer(0, 10);
+            assertSame(view, again);
+            assertEquals(0, again.position());
+            assertEquals(10, again.limit());
+            assertEquals(1, again.get());
+        }
+    }
     
 }
@@ -0,0 +1,52 @@
+package test.site.kason.netlib.io;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.io.PooledIOBufferAllocator;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class PooledIOBufferAllocatorTest {
+
+    @Test
+    public void testSizeClass() {
+        PooledIOBufferAllocator allocator = new PooledIOBufferAllocator();
+        assertEquals(256, allocator.allocate(1).capacity());
+        assertEquals(4096, allocator.allocate(4096).capacity());
+        assertEquals(5120, allocator.allocate(4097).capacity());
+        assertEquals(20480, allocator.allocate(16709).capacity());
+        assertEquals(100000, allocator.allocate(100000).capacity());
+    }
+
+    @Test
+    public void testRecycle() {
+        PooledIOBufferAllocator allocator = new PooledIOBufferAllocator();
+        IOBuffer buffer = allocator.allocate(4096);
+        byte[] array = buffer.array();
+        buffer.push(new byte[]{1, 2, 3});
+        assertTrue(buffer.release());
+        IOBuffer reused = allocator.allocate(4000);
+        assertSame(array, reused.array());
+        assertEquals(0, reused.getReadableSize());
+        assertEquals(4096, reused.getWritableSize());
+    }
+
+    @Test
+    public void testRefCnt() {
+        IOBuffer buffer = new PooledIOBufferAllocator().allocate(100);
+        buffer.retain();
+        assertEquals(2, buffer.refCnt());
+        assertFalse(buffer.release());
+        assertTrue(buffer.release());
+        try {
+            buffer.release();
+            fail("released buffer should not be released again");
+        } catch (IllegalStateException ex) {
+            //expected
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package test.site.kason.netlib.metrics;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.metrics.LatencyHistogram;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtPercentile(99));
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000L);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000000, h.getMax());
+        assertEquals(500500, h.getMean(), 0.001);
+        assertWithin(500000, h.getValueAtPercentile(50));
+        assertWithin(990000, h.getValueAtPercentile(99));
+        assertEquals(1000000, h.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSmallValues() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 16; i++) {
+            h.record(i);
+        }
+        h.record(-5);
+        assertEquals(17, h.getCount());
+        assertEquals(0, h.getValueAtPercentile(1));
+        assertEquals(7, h.getValueAtPercentile(50));
+        assertEquals(15, h.getValueAtPercentile(100));
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+
+    private void assertWithin(long expected, long actual) {
+        assertTrue(expected + " expected but " + actual, actual >= expected && actual <= expected * 1.125);
+    }
+
+}
@@ -0,0 +1,137 @@
+package test.site.kason.netlib.ssl;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.ssl.SSLCodec;
+import site.kason.netlib.ssl.SSLContextUtil;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ChannelHost;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class SSLHandshakeTest {
+
+    private static final byte[] MESSAGE = "sent with the last handshake flight".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * the peer writes its last handshake messages and the first application data in one write,
+     * so they are read by the channel together
+     */
+    @Test(timeout = 10000)
+    public void testDataWithLastHandshakeFlight() throws Exception {
+        SSLContext context = SSLContextUtil.createFromKeyStore(new File("sslclientkeys"), "net-lib", SSLContextUtil.TLS);
+        ServerSocketChannel ssc = ServerSocketChannel.open();
+        ssc.bind(new InetSocketAddress("127.0.0.1", 0));
+        CompletableFuture<String> received = new CompletableFuture<>();
+        CompletableFuture<Void> served = CompletableFuture.runAsync(() -> {
+            try (SocketChannel sc = ssc.accept()) {
+                serve(context, sc);
+                //keep the connection until the data is read
+                received.get(5, TimeUnit.SECONDS);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        ChannelHost host = ChannelHost.create();
+        Channel client = host.createChannel();
+        client.connect(ssc.getLocalAddress());
+        SSLCodec codec = new SSLCodec(context, true);
+        codec.setEnabledProtocols(SSLContextUtil.TLS_1_2);
+        client.addCodec(codec);
+        byte[] data = new byte[MESSAGE.length];
+        int[] length = new int[1];
+        client.read((Channel ch, IOBuffer buffer) -> {
+            int size = Math.min(buffer.getReadableSize(), data.length - length[0]);
+            buffer.poll(data, length[0], size);
+            length[0] += size;
+            if (length[0] < data.length) {
+                return false;
+            }
+            received.complete(new String(data, StandardCharsets.UTF_8));
+            return true;
+        });
+        Thread loop = new Thread(host::listen);
+        loop.start();
+        try {
+            assertEquals(new String(MESSAGE, StandardCharsets.UTF_8), received.get(5, TimeUnit.SECONDS));
+            served.get(5, TimeUnit.SECONDS);
+        } finally {
+            host.stopListen();
+            loop.join();
+            ssc.close();
+        }
+    }
+
+    private static void serve(SSLContext context, SocketChannel sc) throws IOException {
+        SSLEngine engine = context.createSSLEngine();
+        engine.setUseClientMode(false);
+        //the server writes the last handshake flight in TLS 1.2
+        engine.setEnabledProtocols(new String[]{SSLContextUtil.TLS_1_2});
+        int packetSize = engine.getSession().getPacketBufferSize();
+        ByteBuffer netIn = ByteBuffer.allocate(packetSize);
+        ByteBuffer netOut = ByteBuffer.allocate(packetSize * 2);
+        ByteBuffer appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        engine.beginHandshake();
+        HandshakeStatus hs = engine.getHandshakeStatus();
+        boolean sent = false;
+        while (hs != HandshakeStatus.FINISHED && hs != HandshakeStatus.NOT_HANDSHAKING) {
+            switch (hs) {
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                    hs = engine.getHandshakeStatus();
+                    break;
+                case NEED_WRAP:
+                    hs = engine.wrap(ByteBuffer.allocate(0), netOut).getHandshakeStatus();
+                    if (hs == HandshakeStatus.FINISHED) {
+                        engine.wrap(ByteBuffer.wrap(MESSAGE), netOut);
+                        sent = true;
+                    }
+                    if (hs != HandshakeStatus.NEED_WRAP) {
+                        flush(sc, netOut);
+                    }
+                    break;
+                case NEED_UNWRAP:
+                    netIn.flip();
+                    SSLEngineResult result = engine.unwrap(netIn, appIn);
+                    netIn.compact();
+                    if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW && sc.read(netIn) < 0) {
+                        throw new EOFException();
+                    }
+                    hs = result.getHandshakeStatus();
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected handshake status:" + hs);
+            }
+        }
+        assertTrue("the handshake should end with a wrap", sent);
+    }
+
+    private static void flush(SocketChannel sc, ByteBuffer netOut) throws IOException {
+        netOut.flip();
+        while (netOut.hasRemaining()) {
+            sc.write(netOut);
+        }
+        netOut.clear();
+    }
+
+}
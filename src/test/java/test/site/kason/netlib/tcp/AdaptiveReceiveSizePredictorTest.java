@@ -0,0 +1,55 @@
+package test.site.kason.netlib.tcp;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.AdaptiveReceiveSizePredictor;
+import site.kason.netlib.tcp.pipeline.Pipeline;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class AdaptiveReceiveSizePredictorTest {
+
+    @Test
+    public void testGrowAndShrink() {
+        AdaptiveReceiveSizePredictor p = new AdaptiveReceiveSizePredictor(1000, 4096, 20000);
+        assertEquals(1024, p.getMinSize());
+        assertEquals(32768, p.getMaxSize());
+        assertEquals(4096, p.nextSize());
+        p.record(4096, 4096);
+        assertEquals(8192, p.nextSize());
+        for (int i = 0; i < 5; i++) {
+            p.record(8192, 8192);
+        }
+        assertEquals(32768, p.nextSize());
+        //a big read resets the count of small reads
+        for (int i = 0; i < 7; i++) {
+            p.record(100, 32768);
+        }
+        p.record(20000, 32768);
+        assertEquals(32768, p.nextSize());
+        for (int i = 0; i < 100; i++) {
+            p.record(100, p.nextSize());
+        }
+        assertEquals(1024, p.nextSize());
+    }
+
+    @Test
+    public void testResizeInBuffer() {
+        Pipeline pipeline = new Pipeline();
+        IOBuffer in = pipeline.getInBuffer();
+        in.push(new byte[]{1, 2, 3});
+        assertFalse(pipeline.resizeInBuffer(4096));
+        assertTrue(pipeline.resizeInBuffer(16384));
+        assertNotSame(in, pipeline.getInBuffer());
+        assertSame(pipeline.getInBuffer(), pipeline.getOutBuffer());
+        assertEquals(16384, pipeline.getInBuffer().capacity());
+        assertTrue(pipeline.resizeInBuffer(1024));
+        byte[] data = new byte[3];
+        pipeline.getOutBuffer().poll(data);
+        assertArrayEquals(new byte[]{1, 2, 3}, data);
+    }
+
+}
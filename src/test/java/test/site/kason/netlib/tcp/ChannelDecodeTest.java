@@ -0,0 +1,137 @@
+package test.site.kason.netlib.tcp;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import site.kason.netlib.codec.DeflateCodec;
+import site.kason.netlib.io.IOBuffer;
+import site.kason.netlib.tcp.Channel;
+import site.kason.netlib.tcp.ChannelHost;
+import site.kason.netlib.tcp.pipeline.Codec;
+import site.kason.netlib.tcp.pipeline.CodecInitProgress;
+import site.kason.netlib.tcp.pipeline.Processor;
+import site.kason.netlib.tcp.tasks.ByteWriteTask;
+
+/**
+ *
+ * @author Kason Yang
+ */
+public class ChannelDecodeTest {
+
+    private static final int EXPANSION = 1024;
+
+    @Test(timeout = 10000)
+    public void testDecodeInputLeftByFullOutput() throws Exception {
+        final int inputSize = 32;
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        ChannelHost host = ChannelHost.create();
+        host.createServerChannel(new InetSocketAddress(9040), ch -> {
+            ch.addCodec(new ExpandCodec());
+            ch.read((Channel c, IOBuffer buffer) -> {
+                int size = buffer.getReadableSize();
+                buffer.moveReadPosition(size);
+                if (received.addAndGet(size) == inputSize * EXPANSION) {
+                    done.countDown();
+                }
+                return false;
+            });
+        });
+        Channel client = host.createChannel();
+        client.connect(new InetSocketAddress("127.0.0.1", 9040));
+        //a single write,so no more socket data wakes the server up
+        client.write(new ByteWriteTask(new byte[inputSize]));
+        Thread loop = new Thread(host::listen);
+        loop.start();
+        try {
+            boolean decoded = done.await(5, TimeUnit.SECONDS);
+            assertTrue("decoded " + received.get() + " bytes", decoded);
+        } finally {
+            host.stopListen();
+            loop.join();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseInReadTask() throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+        ChannelHost host = ChannelHost.create();
+        host.setExceptionHandler((ch, ex) -> failure.compareAndSet(null, ex));
+        host.createServerChannel(new InetSocketAddress(9041), ch -> {
+            ch.addCodec(new DeflateCodec());
+            ch.read((Channel c, IOBuffer buffer) -> {
+                //consume the output,so the decoder has room for the pending output
+                buffer.moveReadPosition(buffer.getReadableSize());
+                c.close();
+                closed.countDown();
+                return true;
+            });
+            //still queued when the channel is closed by the first task
+            ch.read((Channel c, IOBuffer buffer) -> true);
+        });
+        Channel client = host.createChannel();
+        client.connect(new InetSocketAddress("127.0.0.1", 9041));
+        client.addCodec(new DeflateCodec());
+        client.write(new ByteWriteTask(new byte[64 * 1024]));
+        Thread loop = new Thread(host::listen);
+        loop.start();
+        try {
+            assertTrue(closed.await(5, TimeUnit.SECONDS));
+            //the rest of the read is handled before the submitted task
+            host.submit(() -> null).get();
+            assertNull(failure.get());
+        } finally {
+            host.stopListen();
+            loop.join();
+        }
+    }
+
+    /**
+     * decodes every byte into {@link #EXPANSION} bytes,so a few bytes of input fill the output buffer
+     */
+    private static class ExpandCodec implements Codec {
+
+        private final Processor decoder = new Processor() {
+            @Override
+            public int getMinInBufferSize() {
+                return 1024;
+            }
+
+            @Override
+            public int getMinOutBufferSize() {
+                return EXPANSION;
+            }
+
+            @Override
+            public void process(IOBuffer in, IOBuffer out) {
+                byte[] expanded = new byte[EXPANSION];
+                while (in.getReadableSize() > 0 && out.getWritableSize() >= EXPANSION) {
+                    in.moveReadPosition(1);
+                    out.push(expanded);
+                }
+            }
+        };
+
+        @Override
+        public void init(Channel channel, CodecInitProgress progress) {
+            progress.done();
+        }
+
+        @Override
+        public Processor getEncoder() {
+            return null;
+        }
+
+        @Override
+        public Processor getDecoder() {
+            return decoder;
+        }
+
+    }
+
+}